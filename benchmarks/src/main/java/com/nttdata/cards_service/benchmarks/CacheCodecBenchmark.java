@@ -0,0 +1,128 @@
+package com.nttdata.cards_service.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nttdata.cards_service.cache.CacheCodec;
+import com.nttdata.cards_service.model.*;
+import org.openapitools.jackson.nullable.JsonNullable;
+import org.openapitools.jackson.nullable.JsonNullableModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Valores de caché en Redis: Jackson2JsonRedisSerializer (legacy) frente a CacheCodec en json/smile/cbor,
+// con y sin LZ4. El tamaño en bytes de cada combinación se imprime al inicio de cada trial.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheCodecBenchmark {
+
+    @Param({"legacy", "json", "smile", "cbor"})
+    String format;
+
+    @Param({"none", "lz4"})
+    String compression;
+
+    // card: CardResponse | movements: ventana completa de 100 CardMovement
+    @Param({"card", "movements"})
+    String payload;
+
+    RedisSerializer<Object> serializer;
+    Object value;
+    byte[] bytes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        value = "card".equals(payload) ? card() : movements(100);
+        Class<Object> type = (Class<Object>) value.getClass();
+        ObjectMapper json = mapper(new JsonFactory()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        if ("legacy".equals(format)) {
+            Jackson2JsonRedisSerializer<Object> legacy = new Jackson2JsonRedisSerializer<>(type);
+            legacy.setObjectMapper(json);
+            serializer = legacy;
+        } else {
+            // mismos ajustes que RedisConfig: en binario las fechas van como timestamp
+            CacheCodec codec = new CacheCodec(json,
+                    mapper(new SmileFactory()).enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS),
+                    mapper(new CBORFactory()).enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS),
+                    CacheCodec.Format.valueOf(format.toUpperCase()), "lz4".equals(compression), 512);
+            serializer = codec.serializer(type);
+        }
+        bytes = serializer.serialize(value);
+        System.out.printf("%n# %s/%s/%s: %d bytes%n", format, compression, payload, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .modules(new JavaTimeModule(), new JsonNullableModule())
+                .featuresToDisable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .timeZone("UTC")
+                .build();
+    }
+
+    private static CardResponse card() {
+        CardRequestLimits limits = new CardRequestLimits();
+        limits.setDailyPurchaseLimit(1000.0);
+        return new CardResponse()
+                .id("CARD-1")
+                .cardNumber("4111111111111111")
+                .cardType(CardResponse.CardTypeEnum.DEBIT)
+                .brand(CardResponse.BrandEnum.VISA)
+                .customerId("CUST-1")
+                .primaryAccountId("ACC-0")
+                .accounts(new ArrayList<>(List.of("ACC-0", "ACC-1", "ACC-2")))
+                .status(CardResponse.StatusEnum.ACTIVE)
+                .issueDate(LocalDate.of(2025, 1, 1))
+                .expirationDate(LocalDate.of(2029, 1, 1))
+                .isVirtual(false)
+                .limits(limits)
+                .creationDate(OffsetDateTime.of(2025, 1, 1, 10, 0, 0, 0, ZoneOffset.UTC))
+                .updatedDate(OffsetDateTime.of(2025, 6, 1, 10, 0, 0, 0, ZoneOffset.UTC));
+    }
+
+    private static CardMovement[] movements(int n) {
+        CardMovement[] out = new CardMovement[n];
+        for (int i = 0; i < n; i++) {
+            CardMovementProduct product = new CardMovementProduct();
+            product.setId("ACC-" + (i % 3));
+            product.setType(CardMovementProduct.TypeEnum.SAVINGS_ACCOUNT);
+            product.setNumber(JsonNullable.of("000-" + (i % 3)));
+            out[i] = new CardMovement()
+                    .id("TX-" + i)
+                    .amount(10.0 + i)
+                    .type(CardMovement.TypeEnum.PURCHASE)
+                    .createdDate(OffsetDateTime.of(2025, 1, 1, 10, 0, 0, 0, ZoneOffset.UTC).minusMinutes(i))
+                    .product(product);
+        }
+        return out;
+    }
+}
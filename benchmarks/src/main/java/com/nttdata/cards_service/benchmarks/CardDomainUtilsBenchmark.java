@@ -0,0 +1,92 @@
+package com.nttdata.cards_service.benchmarks;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.model.value.Money;
+import com.nttdata.cards_service.service.CardDomainUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// normalizeAccounts / planSlices frente a las implementaciones anteriores (Stream + LinkedList, reparto en double).
+// Ejecutar con -prof gc para ver gc.alloc.rate.norm (bytes por llamada).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardDomainUtilsBenchmark {
+
+    @Param({"1", "3", "8"})
+    int accounts;
+
+    String primary;
+    List<String> linked;
+    LinkedHashMap<String, Double> balances;
+    String[] ids;
+    long[] amountsMinor;
+    long amountMinor;
+    double amount;
+
+    @Setup
+    public void setup() {
+        primary = "ACC-0";
+        linked = new ArrayList<>();
+        balances = new LinkedHashMap<>();
+        ids = new String[accounts];
+        amountsMinor = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            String id = "ACC-" + i;
+            // como en Mongo: la principal suele repetirse en la lista de asociadas
+            linked.add(id);
+            balances.put(id, 25.0);
+            ids[i] = id;
+            amountsMinor[i] = Money.toMinor(25.0);
+        }
+        amount = 25.0 * accounts - 5.0;
+        amountMinor = Money.toMinor(amount);
+    }
+
+    @Benchmark
+    public List<String> normalizeAccounts() {
+        return CardDomainUtils.normalizeAccounts(primary, linked);
+    }
+
+    @Benchmark
+    public List<String> normalizeAccountsLegacy() {
+        return Stream.concat(Stream.ofNullable(primary), linked.stream())
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toCollection(LinkedList::new));
+    }
+
+    @Benchmark
+    public List<CardOperationResponseSlices> planSlices() {
+        // saldos ya en céntimos, como los deja fetchBalances
+        return CardDomainUtils.planSlices(amountMinor, ids, amountsMinor);
+    }
+
+    // Reparto anterior (mapa con saldos en caja, aritmética en double), para comparar con el actual
+    @Benchmark
+    public List<CardOperationResponseSlices> planSlicesDoubleLegacy() {
+        double remaining = amount;
+        List<CardOperationResponseSlices> slices = new ArrayList<>();
+        for (Map.Entry<String, Double> e : balances.entrySet()) {
+            if (remaining <= 0) break;
+            double bal = e.getValue() == null ? 0.0 : e.getValue();
+            double take = Math.max(0.0, Math.min(bal, remaining));
+            if (take > 0) {
+                CardOperationResponseSlices slice = new CardOperationResponseSlices();
+                slice.setAccountId(e.getKey());
+                slice.setAmount(take);
+                slices.add(slice);
+                remaining -= take;
+            }
+        }
+        if (remaining > 0) throw new IllegalStateException("Saldo insuficiente en cuentas asociadas");
+        return Collections.unmodifiableList(slices);
+    }
+}
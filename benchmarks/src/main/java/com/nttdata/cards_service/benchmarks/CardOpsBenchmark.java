@@ -0,0 +1,86 @@
+package com.nttdata.cards_service.benchmarks;
+
+import com.nttdata.cards_service.adapter.mapper.CardMapper;
+import com.nttdata.cards_service.model.CardOperationResponse;
+import com.nttdata.cards_service.model.CardRequestLimits;
+import com.nttdata.cards_service.model.CardResponse;
+import com.nttdata.cards_service.model.entity.Card;
+import com.nttdata.cards_service.model.entity.CardOperationRecord;
+import com.nttdata.cards_service.model.value.StoredOperation;
+import com.nttdata.cards_service.service.CardOps;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Piezas síncronas que acompañan a cada débito: registro en card_operations y mapeo a la respuesta REST
+// (con el historial embebido que aún traen los documentos antiguos).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardOpsBenchmark {
+
+    // operaciones ya embebidas en la tarjeta
+    @Param({"0", "20", "100"})
+    int history;
+
+    CardMapper mapper;
+    Card card;
+    List<StoredOperation> operations;
+    StoredOperation op;
+
+    @Setup
+    public void setup() {
+        mapper = new CardMapper();
+        card = new Card();
+        card.setId("CARD-1");
+        card.setCardNumber("4111111111111111");
+        card.setCardType("DEBIT");
+        card.setBrand("VISA");
+        card.setCustomerId("CUST-1");
+        card.setPrimaryAccountId("ACC-0");
+        card.setAccounts(new ArrayList<>(List.of("ACC-0", "ACC-1", "ACC-2")));
+        card.setIssueDate(LocalDate.now());
+        card.setExpirationDate(LocalDate.now().plusYears(4));
+        card.setIsVirtual(false);
+        CardRequestLimits limits = new CardRequestLimits();
+        limits.setDailyPurchaseLimit(1000.0);
+        card.setLimits(limits);
+        card.setCreationDate(OffsetDateTime.now());
+        card.setUpdatedDate(OffsetDateTime.now());
+
+        operations = new ArrayList<>();
+        for (int i = 0; i < history; i++) operations.add(operation("OP-" + i));
+        card.setOperations(operations);
+        op = operation("OP-new");
+    }
+
+    @Benchmark
+    public CardOperationRecord toRecord() {
+        return CardOps.toRecord(card.getId(), op);
+    }
+
+    @Benchmark
+    public CardResponse toResponse() {
+        return mapper.toResponse(card);
+    }
+
+    private static StoredOperation operation(String id) {
+        CardOperationResponse result = new CardOperationResponse();
+        result.setApplied(true);
+        result.setTotalAmount(10.0);
+        result.setCommissionTotal(0.0);
+        result.setMessage("OK");
+        StoredOperation op = new StoredOperation();
+        op.setId(id);
+        op.setKind("DEBIT_PAYMENT");
+        op.setCreatedAt(OffsetDateTime.now());
+        op.setResult(result);
+        return op;
+    }
+}
@@ -0,0 +1,160 @@
+package com.nttdata.cards_service.benchmarks;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nttdata.cards_service.cache.CardsCacheService;
+import com.nttdata.cards_service.integration.accounts.AccountsClient;
+import com.nttdata.cards_service.integration.transactions.TransactionsClient;
+import com.nttdata.cards_service.integration.transactions.dto.TxPost;
+import com.nttdata.cards_service.model.entity.Card;
+import com.nttdata.cards_service.model.entity.TxOutboxRecord;
+import com.nttdata.cards_service.model.value.StoredOperation;
+import com.nttdata.cards_service.repository.*;
+import com.nttdata.cards_service.service.*;
+import com.nttdata.cards_service.service.slicing.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Camino completo de DebitOrchestratorService.debit: idempotencia, saldos, plan, saga, retiros y registro.
+// Accounts y Transactions responden por WebClient con latencia configurable; Mongo y Redis son
+// stubs inmediatos para que lo medido sea el propio orquestador.
+// Throughput da ops/s y SampleTime los percentiles (p0.99); con -prof gc, bytes por débito.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DebitOrchestratorBenchmark {
+
+    // latencia simulada de cada llamada a Accounts / Transactions
+    @Param({"0", "2"})
+    long latencyMs;
+
+    // cuentas necesarias para cubrir el importe (1 = solo la principal)
+    @Param({"1", "3"})
+    int accounts;
+
+    @Param({"direct", "two-phase"})
+    String debitMode;
+
+    private static final double BALANCE = 10.0;
+
+    DebitOrchestratorService debit;
+    TransactionOutbox outbox;
+    Card card;
+    double amount;
+    final AtomicLong ops = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        Duration latency = Duration.ofMillis(latencyMs);
+        AccountsClient accountsClient = new AccountsClient(Stubs.accounts(latency, BALANCE),
+                Stubs.circuitBreakers(), Stubs.timeLimiters());
+        TransactionsClient transactionsClient = new TransactionsClient(Stubs.transactions(latency),
+                Stubs.circuitBreakers(), Stubs.timeLimiters());
+
+        card = new Card();
+        card.setId("CARD-1");
+        card.setCardType("DEBIT");
+        card.setPrimaryAccountId("ACC-0");
+        List<String> linked = new ArrayList<>();
+        for (int i = 0; i < 8; i++) linked.add("ACC-" + i);
+        card.setAccounts(linked);
+        // la última cuenta necesaria queda a medias
+        amount = BALANCE * accounts - BALANCE / 2;
+
+        Mono<Object> none = Mono.empty();
+        CardRepository cards = Stubs.of(CardRepository.class, Map.of(
+                "findById", a -> Mono.just(card),
+                "touchUpdatedDate", a -> none));
+        CardOperationRepository operations = Stubs.of(CardOperationRepository.class, Map.of(
+                "findByCardIdAndOperationId", a -> none,
+                "insert", a -> Mono.just(a[0])));
+        DebitSagaRepository sagaRepo = Stubs.of(DebitSagaRepository.class, Map.of(
+                "insert", a -> Mono.just(a[0]),
+                "deleteById", a -> none));
+        TxOutboxRepository outboxRepo = Stubs.of(TxOutboxRepository.class, Map.of(
+                "insert", a -> Flux.fromIterable((Iterable<?>) a[0]),
+                "findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc",
+                a -> Flux.fromIterable(pendingPosts(((Pageable) a[2]).getPageSize()))));
+        ReactiveMongoTemplate mongo = new AcknowledgingMongoTemplate();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        CardsCacheService cache = new CardsCacheService(null, null, null, null, meters, 1) {
+            @Override public Mono<Void> evictCard(String cardId) { return Mono.empty(); }
+            @Override public Mono<Void> evictPrimaryBalance(String cardId) { return Mono.empty(); }
+            @Override public Mono<Void> evictMovements(String cardId) { return Mono.empty(); }
+        };
+        outbox = new TransactionOutbox(outboxRepo, mongo, transactionsClient, cache);
+
+        FundsUpperBoundCache fundsBound = new FundsUpperBoundCache(null) {
+            @Override public Mono<Long> get(String cardId) { return Mono.empty(); }
+            @Override public Mono<Void> remember(String cardId, long upperBoundMinor) { return Mono.empty(); }
+            @Override public Mono<Void> evict(String cardId) { return Mono.empty(); }
+        };
+
+        SliceCommissionStats stats = new SliceCommissionStats();
+        SlicePlanners planners = new SlicePlanners(List.of(new GreedySlicePlanner()), stats);
+        // sin fallos de retiro no se compensa: el repositorio no se llega a usar
+        CompensationExecutor compensations = new CompensationExecutor(
+                Stubs.of(CompensationRepository.class, Map.of()), mongo, accountsClient, outbox, meters);
+
+        debit = new DebitOrchestratorService(cards, operations, accountsClient, outbox,
+                new DailySpendLimiter(null), fundsBound, cache, compensations,
+                new DebitSagaLog(sagaRepo, mongo), planners, meters);
+        ReflectionTestUtils.setField(debit, "mode", debitMode);
+    }
+
+    @Benchmark
+    public StoredOperation debit() {
+        // operationId nuevo en cada llamada: siempre se recorre el camino completo, nunca el replay
+        return debit.debit(card.getId(), "OP-" + ops.incrementAndGet(), amount,
+                "DEBIT_PAYMENT", Collections.emptyMap(), "purchase").block();
+    }
+
+    // Drenado de un lote del outbox contra Transactions con la misma latencia
+    @Benchmark
+    public Long drainOutbox() {
+        return outbox.drain().block();
+    }
+
+    private static List<TxOutboxRecord> pendingPosts(int n) {
+        List<TxOutboxRecord> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TxOutboxRecord r = new TxOutboxRecord();
+            r.setId("TX-" + i);
+            TxPost post = new TxPost();
+            post.setType("purchase");
+            post.setAmount(10.0);
+            r.setPost(post);
+            out.add(r);
+        }
+        return out;
+    }
+
+    // updateFirst siempre reconocido (claims del outbox y transiciones de la saga); nada más toca Mongo
+    static final class AcknowledgingMongoTemplate extends ReactiveMongoTemplate {
+        AcknowledgingMongoTemplate() {
+            super(Stubs.of(ReactiveMongoDatabaseFactory.class, Map.of(
+                    "getExceptionTranslator", a -> new MongoExceptionTranslator())));
+        }
+
+        @Override
+        public Mono<UpdateResult> updateFirst(Query query, UpdateDefinition update, Class<?> entityClass) {
+            return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.nttdata.cards_service.benchmarks;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+// Servicios remotos simulados: WebClient real (codecs, resiliencia) sobre un ExchangeFunction
+// que responde JSON fijo tras una latencia configurable, sin abrir sockets.
+final class Stubs {
+    private Stubs() {}
+
+    static WebClient webClient(String baseUrl, Duration latency, Function<ClientRequest, String> body) {
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .exchangeFunction(req -> {
+                    Mono<ClientResponse> resp = Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body.apply(req))
+                            .build());
+                    return latency.isZero() ? resp : Mono.delay(latency).then(resp);
+                })
+                .build();
+    }
+
+    // Accounts: saldo fijo por cuenta, batch y balance-ops sin comisión
+    static WebClient accounts(Duration latency, double balance) {
+        return webClient("http://accounts/api", latency, req -> {
+            String path = req.url().getPath();
+            if (req.method() == HttpMethod.POST && path.endsWith("/balance-ops")) {
+                return "{\"applied\":true,\"newBalance\":0.0,\"commissionApplied\":0.0,\"message\":\"OK\"}";
+            }
+            if (req.method() == HttpMethod.POST && path.endsWith("/accounts/batch")) {
+                // el cuerpo no se lee: se devuelven las cuentas ACC-1..ACC-7 que usan los benchmarks
+                StringBuilder sb = new StringBuilder("[");
+                for (int i = 1; i < 8; i++) {
+                    if (i > 1) sb.append(',');
+                    sb.append(account("ACC-" + i, balance));
+                }
+                return sb.append(']').toString();
+            }
+            String id = path.substring(path.lastIndexOf('/') + 1);
+            return account(id, balance);
+        });
+    }
+
+    static WebClient transactions(Duration latency) {
+        return webClient("http://transactions/api", latency,
+                req -> "{\"id\":\"TX-1\",\"type\":\"purchase\",\"amount\":10.0}");
+    }
+
+    static CircuitBreakerRegistry circuitBreakers() {
+        return CircuitBreakerRegistry.ofDefaults();
+    }
+
+    static TimeLimiterRegistry timeLimiters() {
+        return TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(2)).build());
+    }
+
+    // Implementación de una interfaz (repositorios, factorías) por nombre de método. Sin Mockito:
+    // su registro de invocaciones (stack trace por llamada) pesaría más que el código medido.
+    @SuppressWarnings("unchecked")
+    static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            Function<Object[], Object> f = methods.get(m.getName());
+            if (f != null) return f.apply(args);
+            switch (m.getName()) {
+                case "toString": return type.getSimpleName() + "Stub";
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default: throw new UnsupportedOperationException(type.getSimpleName() + "." + m.getName());
+            }
+        });
+    }
+
+    private static String account(String id, double balance) {
+        return "{\"id\":\"" + id + "\",\"accountType\":\"savings\",\"balance\":" + balance + ",\"active\":true}";
+    }
+}
@@ -0,0 +1,100 @@
+package com.nttdata.cards_service.cache;
+
+import com.fasterxml.jackson.databind.*;
+import net.jpountz.lz4.*;
+import org.springframework.data.redis.serializer.*;
+
+import java.io.*;
+import java.nio.*;
+
+// Codificación de los valores de caché en Redis: JSON (por defecto, idéntico al formato anterior),
+// Smile o CBOR, con compresión LZ4 opcional a partir de un tamaño.
+// Los valores binarios o comprimidos llevan un byte de cabecera (formato | 0x80 si va comprimido);
+// el JSON sin comprimir se guarda tal cual. Al leer se reconoce cualquiera de ellos, así que
+// cambiar de formato no invalida lo ya guardado.
+public final class CacheCodec {
+
+  public enum Format { JSON, SMILE, CBOR }
+
+  private static final int COMPRESSED = 0x80;
+
+  private final ObjectMapper[] mappers;
+  private final Format format;
+  private final boolean lz4;
+  private final int compressionThreshold;
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+  private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+  // Se necesitan los tres mappers aunque solo se escriba en uno: cualquier nodo puede haber escrito en otro
+  public CacheCodec(ObjectMapper json, ObjectMapper smile, ObjectMapper cbor,
+                    Format format, boolean lz4, int compressionThreshold) {
+    this.mappers = new ObjectMapper[]{json, smile, cbor};
+    this.format = format;
+    this.lz4 = lz4;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  public <T> RedisSerializer<T> serializer(Class<T> type) {
+    ObjectWriter writer = mappers[format.ordinal()].writerFor(type);
+    ObjectReader[] readers = new ObjectReader[mappers.length];
+    for (int i = 0; i < mappers.length; i++) readers[i] = mappers[i].readerFor(type);
+
+    return new RedisSerializer<T>() {
+      @Override
+      public byte[] serialize(T value) {
+        if (value == null) return new byte[0];
+        try {
+          return encode(writer.writeValueAsBytes(value));
+        } catch (IOException e) {
+          throw new SerializationException("No se pudo serializar " + type.getSimpleName(), e);
+        }
+      }
+
+      @Override
+      public T deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return null;
+        try {
+          return decode(bytes, readers);
+        } catch (IOException | LZ4Exception e) {
+          throw new SerializationException("No se pudo deserializar " + type.getSimpleName(), e);
+        }
+      }
+    };
+  }
+
+  private byte[] encode(byte[] payload) {
+    boolean compress = lz4 && payload.length >= compressionThreshold;
+    if (format == Format.JSON && !compress) return payload;
+
+    int header = format.ordinal() + 1;
+    if (!compress) {
+      byte[] out = new byte[payload.length + 1];
+      out[0] = (byte) header;
+      System.arraycopy(payload, 0, out, 1, payload.length);
+      return out;
+    }
+    // cabecera + longitud original + bloque LZ4
+    byte[] out = new byte[5 + compressor.maxCompressedLength(payload.length)];
+    out[0] = (byte) (header | COMPRESSED);
+    ByteBuffer.wrap(out, 1, 4).putInt(payload.length);
+    int n = compressor.compress(payload, 0, payload.length, out, 5, out.length - 5);
+    byte[] exact = new byte[5 + n];
+    System.arraycopy(out, 0, exact, 0, exact.length);
+    return exact;
+  }
+
+  private <T> T decode(byte[] bytes, ObjectReader[] readers) throws IOException {
+    int first = bytes[0] & 0xFF;
+    // JSON sin cabecera (valores escritos antes de existir el codec o con format=json)
+    if (first == '{' || first == '[') return readers[Format.JSON.ordinal()].readValue(bytes, 0, bytes.length);
+
+    int id = (first & ~COMPRESSED) - 1;
+    if (id < 0 || id >= readers.length) throw new IOException("Cabecera de caché desconocida: " + first);
+    if ((first & COMPRESSED) == 0) return readers[id].readValue(bytes, 1, bytes.length - 1);
+
+    int length = ByteBuffer.wrap(bytes, 1, 4).getInt();
+    byte[] payload = new byte[length];
+    decompressor.decompress(bytes, 5, payload, 0, length);
+    return readers[id].readValue(payload, 0, length);
+  }
+}
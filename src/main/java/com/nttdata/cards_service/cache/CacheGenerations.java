@@ -0,0 +1,68 @@
+package com.nttdata.cards_service.cache;
+
+import lombok.extern.slf4j.*;
+import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+
+import static com.nttdata.cards_service.cache.CacheKeys.*;
+
+// Contador de bajas por clave en Redis. Un relleno lee la generación antes de llamar al cargador y la
+// vuelve a leer después de escribir: si cambió, hubo una baja durante la carga y lo escrito puede ser
+// anterior a la mutación. Si Redis falla la generación es desconocida y el relleno se descarta.
+@Slf4j
+final class CacheGenerations {
+
+  // INCR + PEXPIRE en un solo viaje; la clave dura lo que el valor que protege
+  private static final RedisScript<Long> BUMP = new DefaultRedisScript<>(
+      "local g = redis.call('incr', KEYS[1]) redis.call('pexpire', KEYS[1], ARGV[1]) return g",
+      Long.class);
+
+  private static final String NONE = "";
+  private static final String UNKNOWN = "?";
+
+  private final ReactiveStringRedisTemplate redis;
+
+  CacheGenerations(ReactiveStringRedisTemplate redis) {
+    this.redis = redis;
+  }
+
+  // Generación actual de cada clave, en el mismo orden (un MGET)
+  Mono<List<String>> current(List<String> keys) {
+    List<String> genKeys = new ArrayList<>(keys.size());
+    for (String k : keys) genKeys.add(generationKey(k));
+    return redis.opsForValue().multiGet(genKeys)
+        .map(values -> {
+          List<String> out = new ArrayList<>(keys.size());
+          for (int i = 0; i < keys.size(); i++) {
+            String v = i < values.size() ? values.get(i) : null;
+            out.add(v == null ? NONE : v);
+          }
+          return out;
+        })
+        .onErrorResume(e -> {
+          log.warn("[CACHE] No se pudo leer la generación de {}: {}", keys, e.getMessage());
+          return Mono.just(Collections.nCopies(keys.size(), UNKNOWN));
+        });
+  }
+
+  static boolean unchanged(String before, String after) {
+    return !UNKNOWN.equals(before) && before.equals(after);
+  }
+
+  Mono<Void> bump(String key, Duration ttl) {
+    return redis.execute(BUMP, List.of(generationKey(key)), List.of(String.valueOf(Math.max(1, ttl.toMillis()))))
+        .onErrorResume(e -> {
+          log.warn("[CACHE] No se pudo incrementar la generación de {}: {}", key, e.getMessage());
+          return Flux.empty();
+        })
+        .then();
+  }
+
+  private static String generationKey(String key) {
+    return CACHE_GENERATION + ":" + key;
+  }
+}
@@ -4,6 +4,15 @@ public class CacheKeys {
   public static final String CARD_BY_ID = "cards::byId";
   public static final String MOVEMENTS = "cards::movements";
   public static final String PRIMARY_BALANCE = "cards::primaryBalance";
+  // Gasto diario acumulado en céntimos (INCRBY)
+  public static final String DAILY_SPEND = "cards::dailySpend";
+  public static final String FUNDS_UPPER_BOUND = "cards::fundsUpperBound";
+  // Canal pub/sub para invalidar las L1 del resto de nodos
+  public static final String CACHE_INVALIDATION = "cards::cacheInvalidation";
+  // Cerrojos de carga: un solo nodo rellena cada clave caducada
+  public static final String LOAD_LOCK = "cards::loadLock";
+  // Generación por clave: cada baja la incrementa y un relleno iniciado antes se descarta
+  public static final String CACHE_GENERATION = "cards::generation";
   private CacheKeys() {
   }
 }
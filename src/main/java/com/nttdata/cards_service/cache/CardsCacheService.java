@@ -2,60 +2,167 @@ package com.nttdata.cards_service.cache;
 
 
 import com.nttdata.cards_service.model.*;
-import lombok.*;
-import org.springframework.beans.factory.annotation.*;
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.*;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.*;
 import org.springframework.stereotype.*;
+import reactor.core.*;
 import reactor.core.publisher.*;
+import reactor.util.retry.*;
 
+import javax.annotation.*;
 import java.time.*;
+import java.util.*;
 import java.util.function.*;
 
 import static com.nttdata.cards_service.cache.CacheKeys.*;
 
+// Lecturas de tarjeta, saldo principal y movimientos con caché de dos niveles (L1 Caffeine + L2 Redis).
+// Las bajas se publican en CACHE_INVALIDATION para que el resto de nodos descarte su L1.
+// Métricas: cards.cache.requests{cache, tier=l1|l2, result=hit|miss} y
+// cards.cache.loads{cache, result=loaded|coalesced|peer} (cargas ejecutadas, compartidas en el nodo
+// o resueltas por la carga de otro nodo).
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class CardsCacheService {
 
-  private final ReactiveRedisTemplate<String, CardResponse> cardRedis;
-  private final ReactiveRedisTemplate<String, PrimaryAccountBalance> pbRedis;
-  private final ReactiveRedisTemplate<String, CardMovement[]> movRedis;
+  // Movimientos guardados por tarjeta: también es el máximo que admite la API
+  public static final int MOVEMENTS_WINDOW = 100;
 
-  @Value("${cache.cards.card-by-id.ttl:PT5M}")
+  private final ReactiveStringRedisTemplate redis;
+
+  // La tarjeta solo cambia a través de este servicio, que la reescribe en caché: TTL largo
+  @Value("${cache.cards.card-by-id.ttl:PT1H}")
   private Duration cardByIdTtl;
   @Value("${cache.cards.primary-balance.ttl:PT30S}")
   private Duration primaryBalanceTtl;
   @Value("${cache.cards.movements.ttl:PT45S}")
   private Duration movementsTtl;
+  // Duración máxima del cerrojo de carga entre nodos y cadencia con la que se espera el valor en L2
+  @Value("${cache.cards.load-lock.ttl:PT3S}")
+  private Duration loadLockTtl = Duration.ofSeconds(3);
+  @Value("${cache.cards.load-lock.poll-interval:PT0.05S}")
+  private Duration loadLockPoll = Duration.ofMillis(50);
+
+  private final NearCache<CardResponse> cards;
+  private final NearCache<PrimaryAccountBalance> primaryBalances;
+  private final NearCache<CardMovement[]> movements;
+
+  private Disposable invalidations;
+
+  public CardsCacheService(ReactiveRedisTemplate<String, CardResponse> cardRedis,
+                           ReactiveRedisTemplate<String, PrimaryAccountBalance> pbRedis,
+                           ReactiveRedisTemplate<String, CardMovement[]> movRedis,
+                           ReactiveStringRedisTemplate redis,
+                           MeterRegistry meterRegistry,
+                           @Value("${cache.cards.l1.max-size:10000}") long l1MaxSize) {
+    this.redis = redis;
+    LoadLock lock = new LoadLock(redis, () -> loadLockTtl, () -> loadLockPoll);
+    CacheGenerations generations = new CacheGenerations(redis);
+    this.cards = new NearCache<>("cardById", cardRedis, () -> cardByIdTtl, l1MaxSize, lock, generations, meterRegistry);
+    this.primaryBalances = new NearCache<>("primaryBalance", pbRedis, () -> primaryBalanceTtl, l1MaxSize, lock, generations, meterRegistry);
+    this.movements = new NearCache<>("movements", movRedis, () -> movementsTtl, l1MaxSize, lock, generations, meterRegistry);
+  }
 
   public Mono<CardResponse> cardById(String cardId, Supplier<Mono<CardResponse>> loader) {
-    String key = CARD_BY_ID + ":" + cardId;
-    return cardRedis.opsForValue().get(key)
-        .switchIfEmpty(Mono.defer(() -> loader.get()
-            .flatMap(value -> cardRedis.opsForValue().set(key, value, cardByIdTtl)
-                .thenReturn(value))));
+    return cards.get(CARD_BY_ID + ":" + cardId, loader);
+  }
+
+  // Varias tarjetas en O(1) viajes: MGET a Redis y una sola consulta para las que falten.
+  // Devuelve las encontradas en el orden pedido, sin repetidas.
+  public Flux<CardResponse> cardsByIds(Collection<String> cardIds,
+                                       Function<Collection<String>, Flux<CardResponse>> loader) {
+    List<String> keys = new ArrayList<>();
+    for (String id : new LinkedHashSet<>(cardIds)) keys.add(CARD_BY_ID + ":" + id);
+    if (keys.isEmpty()) return Flux.empty();
+    return cards.getAll(keys, missing -> loader.apply(idsOf(missing))
+            .collectMap(card -> CARD_BY_ID + ":" + card.getId()))
+        .flatMapIterable(found -> {
+          List<CardResponse> ordered = new ArrayList<>(found.size());
+          for (String k : keys) if (found.containsKey(k)) ordered.add(found.get(k));
+          return ordered;
+        });
+  }
+
+  private static List<String> idsOf(List<String> keys) {
+    List<String> ids = new ArrayList<>(keys.size());
+    for (String k : keys) ids.add(k.substring(CARD_BY_ID.length() + 1));
+    return ids;
   }
 
   public Mono<PrimaryAccountBalance> primaryBalance(String cardId, Supplier<Mono<PrimaryAccountBalance>> loader) {
+    return primaryBalances.get(PRIMARY_BALANCE + ":" + cardId, loader);
+  }
+
+  // Una sola entrada por tarjeta con sus últimos MOVEMENTS_WINDOW movimientos (más recientes primero).
+  // El loader devuelve esa ventana completa, sea cual sea el límite pedido; cada consulta la recorta.
+  public Flux<CardMovement> movements(String cardId, int limit, Supplier<Flux<CardMovement>> windowLoader) {
+    return movements.get(MOVEMENTS + ":" + cardId,
+            () -> windowLoader.get().take(MOVEMENTS_WINDOW).collectList().map(list -> list.toArray(new CardMovement[0])))
+        .flatMapMany(window -> Flux.fromArray(window).take(Math.max(0, limit)));
+  }
+
+  // Write-through tras guardar la tarjeta; el resto de nodos descarta su L1 y relee de Redis
+  public Mono<Void> putCard(CardResponse card) {
+    String key = CARD_BY_ID + ":" + card.getId();
+    return tolerant(key, cards.put(key, card)).then(publish(key));
+  }
+
+  public Mono<Void> evictCard(String cardId) {
+    String key = CARD_BY_ID + ":" + cardId;
+    return tolerant(key, cards.evict(key)).then(publish(key));
+  }
+
+  public Mono<Void> evictPrimaryBalance(String cardId) {
     String key = PRIMARY_BALANCE + ":" + cardId;
-    return pbRedis.opsForValue().get(key)
-        .switchIfEmpty(Mono.defer(() -> loader.get()
-            .flatMap(value -> pbRedis.opsForValue().set(key, value, primaryBalanceTtl)
-                .thenReturn(value))));
-  }
-
-  public Flux<CardMovement> movements(String cardId, int limit, Supplier<Flux<CardMovement>> loader) {
-    String key = MOVEMENTS + ":" + cardId + ":" + limit;
-    return movRedis.opsForValue().get(key)
-        .flatMapMany(Flux::fromArray)
-        .switchIfEmpty(
-            Mono.defer(() -> loader.get()
-                    .collectList()
-                    .flatMap(list -> movRedis.opsForValue()
-                        .set(key, list.toArray(new CardMovement[0]), movementsTtl)
-                        .thenReturn(list.toArray(new CardMovement[0]))))
-                .flatMapMany(Flux::fromArray)
-        );
+    return tolerant(key, primaryBalances.evict(key)).then(publish(key));
+  }
+
+  public Mono<Void> evictMovements(String cardId) {
+    String key = MOVEMENTS + ":" + cardId;
+    return tolerant(key, movements.evict(key)).then(publish(key));
+  }
+
+  // La mutación ya está guardada: un fallo de Redis no la revierte, la entrada obsoleta caduca con su TTL
+  private Mono<Void> tolerant(String keyOrPrefix, Mono<Void> op) {
+    return op.onErrorResume(e -> {
+      log.warn("[CACHE] No se pudo actualizar {}: {}", keyOrPrefix, e.getMessage());
+      return Mono.empty();
+    });
+  }
+
+  private Mono<Void> publish(String keyOrPrefix) {
+    return redis.convertAndSend(CACHE_INVALIDATION, keyOrPrefix)
+        .doOnError(e -> log.warn("[CACHE] No se pudo publicar la invalidación de {}: {}", keyOrPrefix, e.getMessage()))
+        .onErrorResume(e -> Mono.empty())
+        .then();
+  }
+
+  // Mensaje de otro nodo (o de este mismo): clave exacta o prefijo terminado en '*'
+  void onInvalidation(String keyOrPrefix) {
+    if (keyOrPrefix.endsWith("*")) {
+      String prefix = keyOrPrefix.substring(0, keyOrPrefix.length() - 1);
+      for (NearCache<?> c : List.of(cards, primaryBalances, movements)) c.invalidateLocalPrefix(prefix);
+    } else {
+      for (NearCache<?> c : List.of(cards, primaryBalances, movements)) c.invalidateLocal(keyOrPrefix);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void listenForInvalidations() {
+    invalidations = redis.listenToChannel(CACHE_INVALIDATION)
+        .doOnNext(m -> onInvalidation(m.getMessage()))
+        // si se cae la suscripción se reintenta; mientras tanto L1 solo se acota por su TTL
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+            .doBeforeRetry(r -> log.warn("[CACHE] Suscripción de invalidaciones caída: {}", r.failure().getMessage())))
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stopListening() {
+    if (invalidations != null) invalidations.dispose();
   }
 }
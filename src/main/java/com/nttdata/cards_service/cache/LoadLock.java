@@ -0,0 +1,62 @@
+package com.nttdata.cards_service.cache;
+
+import lombok.extern.slf4j.*;
+import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+
+import static com.nttdata.cards_service.cache.CacheKeys.*;
+
+// Cerrojo corto en Redis (SET NX PX) para que, entre nodos, un solo cargador rellene cada clave
+// cuando caduca. Si Redis falla se deja cargar igualmente: el cerrojo solo evita trabajo repetido.
+@Slf4j
+final class LoadLock {
+
+  // Solo borra el cerrojo si sigue siendo nuestro (puede haber caducado y tenerlo otro nodo)
+  private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+      Long.class);
+
+  private final ReactiveStringRedisTemplate redis;
+  private final Supplier<Duration> ttl;
+  private final Supplier<Duration> pollInterval;
+
+  LoadLock(ReactiveStringRedisTemplate redis, Supplier<Duration> ttl, Supplier<Duration> pollInterval) {
+    this.redis = redis;
+    this.ttl = ttl;
+    this.pollInterval = pollInterval;
+  }
+
+  Mono<Boolean> tryAcquire(String key, String token) {
+    return redis.opsForValue().setIfAbsent(lockKey(key), token, ttl.get())
+        .defaultIfEmpty(false)
+        .onErrorResume(e -> {
+          log.warn("[CACHE] No se pudo tomar el cerrojo de carga de {}: {}", key, e.getMessage());
+          return Mono.just(true);
+        });
+  }
+
+  Mono<Void> release(String key, String token) {
+    return redis.execute(RELEASE, List.of(lockKey(key)), List.of(token))
+        .onErrorResume(e -> Flux.empty())
+        .then();
+  }
+
+  Duration pollInterval() {
+    return pollInterval.get();
+  }
+
+  // Consultas a L2 mientras otro nodo tiene el cerrojo: como mucho lo que dura el cerrojo
+  int maxPolls() {
+    long poll = Math.max(1, pollInterval.get().toMillis());
+    return (int) Math.max(1, ttl.get().toMillis() / poll);
+  }
+
+  private static String lockKey(String key) {
+    return LOAD_LOCK + ":" + key;
+  }
+}
@@ -0,0 +1,275 @@
+package com.nttdata.cards_service.cache;
+
+import com.github.benmanes.caffeine.cache.*;
+import io.micrometer.core.instrument.*;
+import org.springframework.data.redis.core.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+// Caché de dos niveles para un tipo de valor: L1 en memoria (Caffeine) delante de L2 en Redis.
+// Ambos niveles caducan con el mismo TTL; las escrituras y bajas en otro nodo llegan por pub/sub
+// (ver CardsCacheService) y solo invalidan L1. Los valores de L1 se comparten entre llamadas:
+// quien los reciba no debe modificarlos.
+// Ante un fallo de L1, las llamadas concurrentes del nodo comparten una sola lectura/carga
+// (SingleFlight) y entre nodos solo carga quien toma el LoadLock; el resto espera a verlo en L2.
+// Lo cargado se escribe de forma condicional (ver fill): nunca pisa un put ni sobrevive a una baja
+// ocurridos mientras se cargaba. Igual con L1: un valor leído de L2 o cargado antes de una baja local
+// (propia o recibida por pub/sub) no vuelve a entrar en L1 cuando la respuesta llega tarde.
+final class NearCache<V> {
+
+  // Bajas locales por franja de claves; una franja compartida solo descarta de más, nunca de menos
+  private static final int STRIPES = 1024;
+
+  private final Cache<String, V> local;
+  private final ReactiveRedisTemplate<String, V> redis;
+  private final Supplier<Duration> ttl;
+  private final LoadLock lock;
+  private final CacheGenerations generations;
+  private final SingleFlight<V> inFlight = new SingleFlight<>();
+  private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+  private final Counter l1Hits;
+  private final Counter l1Misses;
+  private final Counter l2Hits;
+  private final Counter l2Misses;
+  private final Counter loaded;
+  private final Counter coalesced;
+  private final Counter fromPeer;
+
+  NearCache(String name, ReactiveRedisTemplate<String, V> redis, Supplier<Duration> ttl, long maxSize,
+            LoadLock lock, CacheGenerations generations, MeterRegistry meterRegistry) {
+    this.redis = redis;
+    this.ttl = ttl;
+    this.lock = lock;
+    this.generations = generations;
+    this.local = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfter(new Expiry<String, V>() {
+          @Override
+          public long expireAfterCreate(String key, V value, long currentTime) {
+            return ttlNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+            return ttlNanos();
+          }
+
+          @Override
+          public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .build();
+    this.l1Hits = counter(meterRegistry, name, "l1", "hit");
+    this.l1Misses = counter(meterRegistry, name, "l1", "miss");
+    this.l2Hits = counter(meterRegistry, name, "l2", "hit");
+    this.l2Misses = counter(meterRegistry, name, "l2", "miss");
+    this.loaded = loads(meterRegistry, name, "loaded");
+    this.coalesced = loads(meterRegistry, name, "coalesced");
+    this.fromPeer = loads(meterRegistry, name, "peer");
+  }
+
+  Mono<V> get(String key, Supplier<Mono<V>> loader) {
+    return Mono.defer(() -> {
+      V cached = local.getIfPresent(key);
+      if (cached != null) {
+        l1Hits.increment();
+        return Mono.just(cached);
+      }
+      l1Misses.increment();
+      return inFlight.execute(key, () -> {
+        long seen = invalidations(key);
+        return redis.opsForValue().get(key)
+            .doOnNext(value -> {
+              l2Hits.increment();
+              putLocal(key, value, seen);
+            })
+            .switchIfEmpty(Mono.defer(() -> {
+              l2Misses.increment();
+              return loadOnce(key, loader);
+            }));
+      }, coalesced::increment);
+    });
+  }
+
+  private Mono<V> loadOnce(String key, Supplier<Mono<V>> loader) {
+    String token = UUID.randomUUID().toString();
+    return lock.tryAcquire(key, token)
+        .flatMap(acquired -> acquired
+            ? Mono.usingWhen(Mono.just(token), t -> load(key, loader), t -> lock.release(key, t))
+            : awaitPeer(key, loader));
+  }
+
+  // Otro nodo está cargando: se espera a que deje el valor en L2; si no llega a tiempo se carga aquí
+  private Mono<V> awaitPeer(String key, Supplier<Mono<V>> loader) {
+    Duration poll = lock.pollInterval();
+    int polls = lock.maxPolls();
+    long seen = invalidations(key);
+    return Mono.defer(() -> redis.opsForValue().get(key))
+        // al agotar las consultas el flujo acaba vacío (no en error) y se pasa a cargar
+        .repeatWhenEmpty(attempts -> attempts.take(polls).delayElements(poll))
+        .doOnNext(value -> {
+          fromPeer.increment();
+          putLocal(key, value, seen);
+        })
+        .switchIfEmpty(Mono.defer(() -> load(key, loader)));
+  }
+
+  private Mono<V> load(String key, Supplier<Mono<V>> loader) {
+    List<String> keys = List.of(key);
+    long[] seen = invalidations(keys);
+    return generations.current(keys).flatMap(before -> Mono.defer(loader)
+        .doOnSubscribe(s -> loaded.increment())
+        .flatMap(value -> fill(keys, before, seen, Map.of(key, value)).thenReturn(value)));
+  }
+
+  // Relleno tras una carga. SET NX: si un put escribió la clave durante la carga, su valor gana.
+  // Después se relee la generación: si hubo una baja entretanto, lo escrito puede ser anterior a la
+  // mutación y se borra. Solo lo que se queda en L2 entra en L1, y sin pisar lo que ya haya puesto un put.
+  private Mono<Void> fill(List<String> keys, List<String> before, long[] seen, Map<String, V> fresh) {
+    return Flux.fromIterable(keys)
+        .filter(fresh::containsKey)
+        .flatMap(k -> redis.opsForValue().setIfAbsent(k, fresh.get(k), ttl.get())
+            .filter(Boolean::booleanValue)
+            .map(ok -> k))
+        .collectList()
+        .filter(written -> !written.isEmpty())
+        .flatMap(written -> generations.current(written).flatMap(after -> {
+          Map<String, Integer> index = new HashMap<>();
+          for (int i = 0; i < keys.size(); i++) index.put(keys.get(i), i);
+          List<String> stale = new ArrayList<>();
+          for (int i = 0; i < written.size(); i++) {
+            String k = written.get(i);
+            int at = index.get(k);
+            if (CacheGenerations.unchanged(before.get(at), after.get(i))) putLocalIfAbsent(k, fresh.get(k), seen[at]);
+            else stale.add(k);
+          }
+          return Flux.fromIterable(stale).flatMap(k -> redis.opsForValue().delete(k)).then();
+        }));
+  }
+
+  // Lectura en bloque: L1, un MGET para lo que falte y una sola llamada al cargador con el resto.
+  // Lo cargado se rellena como en get (fill), con un SET NX por clave sin esperar cada respuesta:
+  // Lettuce los envía en pipeline por la conexión compartida. Devuelve solo las claves encontradas.
+  Mono<Map<String, V>> getAll(List<String> keys, Function<List<String>, Mono<Map<String, V>>> loader) {
+    return Mono.defer(() -> {
+      Map<String, V> found = new HashMap<>(local.getAllPresent(keys));
+      l1Hits.increment(found.size());
+      List<String> l1Missing = new ArrayList<>();
+      for (String k : keys) if (!found.containsKey(k)) l1Missing.add(k);
+      if (l1Missing.isEmpty()) return Mono.just(found);
+      l1Misses.increment(l1Missing.size());
+      long[] seen = invalidations(l1Missing);
+
+      return redis.opsForValue().multiGet(l1Missing)
+          .flatMap(values -> {
+            List<String> missing = new ArrayList<>();
+            long[] missingSeen = new long[l1Missing.size()];
+            for (int i = 0; i < l1Missing.size(); i++) {
+              V value = i < values.size() ? values.get(i) : null;
+              if (value == null) {
+                missingSeen[missing.size()] = seen[i];
+                missing.add(l1Missing.get(i));
+              } else {
+                found.put(l1Missing.get(i), value);
+                putLocal(l1Missing.get(i), value, seen[i]);
+              }
+            }
+            l2Hits.increment(l1Missing.size() - missing.size());
+            if (missing.isEmpty()) return Mono.just(found);
+            l2Misses.increment(missing.size());
+
+            return generations.current(missing).flatMap(before -> Mono.defer(() -> loader.apply(missing))
+                .doOnSubscribe(s -> loaded.increment())
+                .defaultIfEmpty(Map.of())
+                .flatMap(fresh -> fill(missing, before, missingSeen, fresh)
+                    .then(Mono.fromSupplier(() -> {
+                      found.putAll(fresh);
+                      return found;
+                    }))));
+          });
+    });
+  }
+
+  // Escritura directa en ambos niveles (p. ej. tras guardar la entidad)
+  Mono<Void> put(String key, V value) {
+    return redis.opsForValue().set(key, value, ttl.get())
+        .doFinally(s -> local.put(key, value))
+        .then();
+  }
+
+  // Baja en ambos niveles de este nodo; los demás nodos se enteran por el mensaje de invalidación.
+  // La generación sube antes del borrado para que un relleno en curso (aquí o en otro nodo) se descarte.
+  Mono<Void> evict(String key) {
+    return generations.bump(key, ttl.get())
+        .then(redis.opsForValue().delete(key))
+        .doFinally(s -> invalidateLocal(key))
+        .then();
+  }
+
+  // La franja sube antes de quitar la clave: quien escriba en L1 después lo verá (ver putLocal)
+  void invalidateLocal(String key) {
+    invalidations.incrementAndGet(stripe(key));
+    local.invalidate(key);
+  }
+
+  void invalidateLocalPrefix(String prefix) {
+    for (int i = 0; i < STRIPES; i++) invalidations.incrementAndGet(i);
+    local.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+  }
+
+  private long invalidations(String key) {
+    return invalidations.get(stripe(key));
+  }
+
+  private long[] invalidations(List<String> keys) {
+    long[] seen = new long[keys.size()];
+    for (int i = 0; i < seen.length; i++) seen[i] = invalidations(keys.get(i));
+    return seen;
+  }
+
+  // Escribe en L1 un valor obtenido cuando la franja estaba en seen. Se comprueba después de escribir:
+  // si hubo una baja entretanto se retira; si la baja llega después, ella misma lo quita.
+  private void putLocal(String key, V value, long seen) {
+    local.put(key, value);
+    if (invalidations(key) != seen) local.asMap().remove(key, value);
+  }
+
+  private void putLocalIfAbsent(String key, V value, long seen) {
+    if (local.asMap().putIfAbsent(key, value) == null && invalidations(key) != seen)
+      local.asMap().remove(key, value);
+  }
+
+  private static int stripe(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+  }
+
+  long localSize() {
+    local.cleanUp();
+    return local.estimatedSize();
+  }
+
+  private long ttlNanos() {
+    Duration d = ttl.get();
+    return d == null || d.isNegative() ? 0 : d.toNanos();
+  }
+
+  private static Counter counter(MeterRegistry registry, String cache, String tier, String result) {
+    return Counter.builder("cards.cache.requests")
+        .tag("cache", cache)
+        .tag("tier", tier)
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private static Counter loads(MeterRegistry registry, String cache, String result) {
+    return Counter.builder("cards.cache.loads")
+        .tag("cache", cache)
+        .tag("result", result)
+        .register(registry);
+  }
+}
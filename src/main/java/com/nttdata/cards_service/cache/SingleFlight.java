@@ -0,0 +1,39 @@
+package com.nttdata.cards_service.cache;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// Llamadas concurrentes con la misma clave comparten una única ejecución en curso.
+// Al terminar (éxito o error) la clave se libera y la siguiente llamada vuelve a ejecutar.
+public final class SingleFlight<T> {
+
+    private final ConcurrentMap<String, Mono<T>> inFlight = new ConcurrentHashMap<>();
+
+    public Mono<T> execute(String key, Supplier<Mono<T>> call, Runnable onCoalesced) {
+        return Mono.defer(() -> {
+            boolean[] created = {false};
+            Mono<T> shared = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return share(k, call);
+            });
+            if (!created[0]) onCoalesced.run();
+            return shared;
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private Mono<T> share(String key, Supplier<Mono<T>> call) {
+        @SuppressWarnings("unchecked")
+        Mono<T>[] self = new Mono[1];
+        self[0] = Mono.defer(call)
+                .doFinally(s -> inFlight.remove(key, self[0]))
+                .cache();
+        return self[0];
+    }
+}
@@ -0,0 +1,56 @@
+package com.nttdata.cards_service.config;
+
+import com.nttdata.cards_service.model.entity.CardOperationRecord;
+import com.nttdata.cards_service.model.entity.CompensationRecord;
+import com.nttdata.cards_service.model.entity.DebitSagaRecord;
+import com.nttdata.cards_service.model.entity.TxOutboxRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// spring.data.mongodb.auto-index-creation viene desactivado: los índices de las colecciones auxiliares
+// se aseguran al arrancar. Se declaran solo en las entidades (@Indexed/@CompoundIndex, TTL por propiedad)
+// y aquí se resuelven esas mismas anotaciones, así que no hay dos definiciones que puedan divergir.
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexesConfig {
+
+    // Colecciones cuyo funcionamiento depende de sus índices: unicidad de la idempotencia,
+    // TTL de los registros cerrados y consultas de las recuperaciones
+    static final List<Class<?>> ENTITIES = List.of(
+            CardOperationRecord.class, DebitSagaRecord.class, TxOutboxRecord.class, CompensationRecord.class);
+
+    private final ReactiveMongoTemplate mongo;
+    private final MongoMappingContext mappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        ensureIndexes().count()
+                .subscribe(n -> log.debug("{} índices Mongo asegurados", n));
+    }
+
+    // Devuelve los índices asegurados; uno que falle (p.ej. cambiar el TTL de un índice existente
+    // requiere collMod manual) se registra y no impide asegurar los demás
+    public Flux<String> ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        return Flux.fromIterable(ENTITIES)
+                .concatMap(type -> Flux.fromIterable(resolver.resolveIndexFor(type))
+                        .concatMap(index -> mongo.indexOps(type).ensureIndex(index)
+                                .map(name -> type.getSimpleName() + "." + name)
+                                .onErrorResume(e -> {
+                                    log.warn("No se pudo asegurar el índice Mongo {}.{}: {}", type.getSimpleName(),
+                                            index.getIndexOptions().get("name"), e.getMessage());
+                                    return Mono.empty();
+                                })));
+    }
+}
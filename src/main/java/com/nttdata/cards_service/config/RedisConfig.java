@@ -1,8 +1,12 @@
 package com.nttdata.cards_service.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
+import com.nttdata.cards_service.cache.CacheCodec;
 import com.nttdata.cards_service.model.CardMovement;
 import com.nttdata.cards_service.model.CardResponse;
 import com.nttdata.cards_service.model.PrimaryAccountBalance;
@@ -11,7 +15,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -38,47 +42,44 @@ public class RedisConfig {
     return mapper;
   }*/
 
+  // Formato de los valores de caché: json | smile | cbor; compresión: none | lz4 (a partir del umbral en bytes)
   @Bean
-  public ReactiveRedisTemplate<String, CardResponse> cardResponseRedisTemplate(
-      ReactiveRedisConnectionFactory factory, ObjectMapper objectMapper) {
-
-    Jackson2JsonRedisSerializer<CardResponse> serializer =
-        new Jackson2JsonRedisSerializer<>(CardResponse.class);
-    serializer.setObjectMapper(objectMapper);
+  public CacheCodec cacheCodec(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder builder,
+                               @Value("${cache.codec.format:json}") String format,
+                               @Value("${cache.codec.compression:none}") String compression,
+                               @Value("${cache.codec.compression-threshold:512}") int compressionThreshold) {
+    // en binario las fechas van como timestamp numérico: más compacto que el texto ISO
+    ObjectMapper smile = builder.factory(new SmileFactory()).build()
+        .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    ObjectMapper cbor = builder.factory(new CBORFactory()).build()
+        .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    return new CacheCodec(objectMapper, smile, cbor, CacheCodec.Format.valueOf(format.trim().toUpperCase()),
+        "lz4".equalsIgnoreCase(compression.trim()), compressionThreshold);
+  }
 
-    RedisSerializationContext<String, CardResponse> ctx =
-        RedisSerializationContext.<String, CardResponse>newSerializationContext(new StringRedisSerializer())
-            .value(serializer).build();
-    return new ReactiveRedisTemplate<>(factory, ctx);
+  @Bean
+  public ReactiveRedisTemplate<String, CardResponse> cardResponseRedisTemplate(
+      ReactiveRedisConnectionFactory factory, CacheCodec codec) {
+    return template(factory, codec, CardResponse.class);
   }
 
   @Bean
   public ReactiveRedisTemplate<String, PrimaryAccountBalance> primaryBalanceRedisTemplate(
-      ReactiveRedisConnectionFactory factory,  ObjectMapper objectMapper) {
-
-    Jackson2JsonRedisSerializer<PrimaryAccountBalance> serializer =
-        new Jackson2JsonRedisSerializer<>(PrimaryAccountBalance.class);
-    serializer.setObjectMapper(objectMapper);
-
-    RedisSerializationContext<String, PrimaryAccountBalance> ctx =
-        RedisSerializationContext.<String, PrimaryAccountBalance>newSerializationContext(new StringRedisSerializer())
-            .value(serializer).build();
-    return new ReactiveRedisTemplate<>(factory, ctx);
+      ReactiveRedisConnectionFactory factory, CacheCodec codec) {
+    return template(factory, codec, PrimaryAccountBalance.class);
   }
 
   @Bean
   public ReactiveRedisTemplate<String, CardMovement[]> cardMovementsRedisTemplate(
-      ReactiveRedisConnectionFactory factory, ObjectMapper objectMapper) {
-
-    Jackson2JsonRedisSerializer<CardMovement[]> serializer =
-        new Jackson2JsonRedisSerializer<>(CardMovement[].class);
-    serializer.setObjectMapper(objectMapper);
+      ReactiveRedisConnectionFactory factory, CacheCodec codec) {
+    return template(factory, codec, CardMovement[].class);
+  }
 
-    RedisSerializationContext<String, CardMovement[]> ctx =
-        RedisSerializationContext.<String, CardMovement[]>newSerializationContext(new StringRedisSerializer())
-            .value(serializer).build();
+  private static <T> ReactiveRedisTemplate<String, T> template(ReactiveRedisConnectionFactory factory,
+                                                              CacheCodec codec, Class<T> type) {
+    RedisSerializationContext<String, T> ctx =
+        RedisSerializationContext.<String, T>newSerializationContext(new StringRedisSerializer())
+            .value(codec.serializer(type)).build();
     return new ReactiveRedisTemplate<>(factory, ctx);
   }
 }
-
-
@@ -1,9 +1,11 @@
 package com.nttdata.cards_service.config;
 
+import io.micrometer.core.instrument.*;
 import io.netty.channel.*;
 import io.netty.handler.timeout.*;
 import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.actuate.metrics.web.reactive.client.*;
 import org.springframework.context.annotation.*;
 import org.springframework.http.*;
 import org.springframework.http.client.reactive.*;
@@ -18,7 +20,11 @@ import java.util.concurrent.*;
 @Slf4j
 public class WebClientConfig {
 
-  private WebClient.Builder rawBuilder() {
+  // Latencia de cada llamada saliente: http.client.requests{client, method, uri (plantilla), status, outcome}
+  @Value("${cards.metrics.client-requests-name:http.client.requests}")
+  private String clientRequestsMetric = "http.client.requests";
+
+  private WebClient.Builder rawBuilder(String client, MeterRegistry meterRegistry) {
     HttpClient httpClient = HttpClient.create()
         .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
         .responseTimeout(Duration.ofSeconds(2))
@@ -29,6 +35,7 @@ public class WebClientConfig {
     return WebClient.builder()
         .clientConnector(new ReactorClientHttpConnector(httpClient))
         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .filter(metrics(client, meterRegistry))
         .filter(new ServerBearerExchangeFilterFunction())
         .filter(logRequest())
         .filter(logResponse())
@@ -39,26 +46,43 @@ public class WebClientConfig {
 
   @Bean
   public WebClient accountsWebClient(
-      @Value("${service.accounts.url:${service.accounts.base-url}}") String url) {
+      @Value("${service.accounts.url:${service.accounts.base-url}}") String url,
+      MeterRegistry meterRegistry) {
     String base = url.trim();
     log.info("[ACCOUNTS] baseUrl={}", base);
-    return rawBuilder().baseUrl(base).build();
+    return rawBuilder("accounts", meterRegistry).baseUrl(base).build();
   }
 
   @Bean
   public WebClient creditsWebClient(
-      @Value("${service.credits.url:${service.credits.base-url}}") String url) {
+      @Value("${service.credits.url:${service.credits.base-url}}") String url,
+      MeterRegistry meterRegistry) {
     String base = url.trim();
     log.info("[CREDITS] baseUrl={}", base);
-    return rawBuilder().baseUrl(base).build();
+    return rawBuilder("credits", meterRegistry).baseUrl(base).build();
   }
 
   @Bean
   public WebClient transactionsWebClient(
-      @Value("${service.transactions.url:${service.transactions.base-url}}") String url) {
+      @Value("${service.transactions.url:${service.transactions.base-url}}") String url,
+      MeterRegistry meterRegistry) {
     String base = url.trim();
     log.info("[TRANSACTIONS] baseUrl={}", base);
-    return rawBuilder().baseUrl(base).build();
+    return rawBuilder("transactions", meterRegistry).baseUrl(base).build();
+  }
+
+  // Se registra primero: el tiempo incluye el resto de filtros y termina al llegar las cabeceras de la
+  // respuesta (no incluye la lectura del cuerpo, que hace después quien llama).
+  // La uri es la plantilla ("/accounts/{id}"), no la URL con ids, para no disparar la cardinalidad.
+  private ExchangeFilterFunction metrics(String client, MeterRegistry meterRegistry) {
+    WebClientExchangeTagsProvider tags = (request, response, error) -> Tags.of(
+        Tag.of("client", client),
+        WebClientExchangeTags.method(request),
+        WebClientExchangeTags.uri(request),
+        WebClientExchangeTags.status(response, error),
+        WebClientExchangeTags.outcome(response));
+    return new MetricsWebClientFilterFunction(meterRegistry, tags, clientRequestsMetric,
+        builder -> builder.publishPercentileHistogram());
   }
 
   private ExchangeFilterFunction logRequest() {
@@ -13,7 +13,9 @@ import org.springframework.web.reactive.function.client.*;
 import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import static org.springframework.http.HttpStatus.*;
 
@@ -26,6 +28,15 @@ public class AccountsClient {
   private final CircuitBreakerRegistry circuitBreakerRegistry;
   private final TimeLimiterRegistry timeLimiterRegistry;
 
+  // Se desactiva sola si Accounts responde que no soporta POST /accounts/batch
+  private final AtomicBoolean batchSupported = new AtomicBoolean(true);
+
+  @Value("${service.accounts.batch-enabled:true}")
+  private boolean batchEnabled = true;
+  // GET /accounts/{id} simultáneos cuando no hay endpoint batch
+  @Value("${service.accounts.lookup-concurrency:4}")
+  private int lookupConcurrency = 4;
+
   public AccountsClient(@Qualifier("accountsWebClient") WebClient webClient,
                         CircuitBreakerRegistry circuitBreakerRegistry,
                         TimeLimiterRegistry timeLimiterRegistry) {
@@ -49,6 +60,62 @@ public class AccountsClient {
             ex -> new ResponseStatusException(GATEWAY_TIMEOUT, "Timeout Accounts (2s)", ex));
   }
 
+  // Obtener varias cuentas en una sola llamada; accountId -> cuenta en el orden pedido.
+  // Falla con "Account not found" si falta alguna, igual que getAccount.
+  public Mono<Map<String, AccountDto>> getAccounts(Collection<String> ids) {
+    List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+    if (distinct.isEmpty()) return Mono.just(Collections.emptyMap());
+    if (distinct.size() == 1 || !batchEnabled || !batchSupported.get()) return getAccountsOneByOne(distinct);
+
+    CircuitBreaker cb = circuitBreakerRegistry.circuitBreaker("accounts");
+    log.debug("POST Accounts /accounts/batch ids={}", distinct);
+    return webClient.post()
+        .uri("/accounts/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new AccountBatchRequest(distinct))
+        .retrieve()
+        .onStatus(this::batchUnsupported, r -> Mono.error(new BatchUnsupportedException(r.rawStatusCode())))
+        .bodyToFlux(AccountDto.class)
+        .collectMap(AccountDto::getId)
+        .map(Optional::of)
+        // Se resuelve antes del circuit breaker: que no exista el endpoint no es un fallo de Accounts
+        // y no debe abrir el circuito que necesitan los GET individuales
+        .onErrorResume(BatchUnsupportedException.class, ex -> {
+          if (batchSupported.compareAndSet(true, false)) {
+            log.info("Accounts no soporta /accounts/batch (status={}); se usan GET individuales", ex.status);
+          }
+          return Mono.just(Optional.empty());
+        })
+        .transformDeferred(CircuitBreakerOperator.of(cb))
+        .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter("accounts")))
+        .onErrorMap(TimeoutException.class,
+            ex -> new ResponseStatusException(GATEWAY_TIMEOUT, "Timeout Accounts (2s)", ex))
+        .flatMap(found -> found.isPresent()
+            ? inRequestedOrder(distinct, found.get())
+            : getAccountsOneByOne(distinct));
+  }
+
+  private Mono<Map<String, AccountDto>> getAccountsOneByOne(List<String> ids) {
+    return Flux.fromIterable(ids)
+        .flatMapSequential(this::getAccount, Math.max(1, lookupConcurrency))
+        .collectMap(AccountDto::getId, a -> a, LinkedHashMap::new)
+        .flatMap(found -> inRequestedOrder(ids, found));
+  }
+
+  private static Mono<Map<String, AccountDto>> inRequestedOrder(List<String> ids, Map<String, AccountDto> found) {
+    Map<String, AccountDto> out = new LinkedHashMap<>();
+    for (String id : ids) {
+      AccountDto acc = found.get(id);
+      if (acc == null) return Mono.error(new IllegalArgumentException("Account not found"));
+      out.put(id, acc);
+    }
+    return Mono.just(out);
+  }
+
+  private boolean batchUnsupported(HttpStatus s) {
+    return s == NOT_FOUND || s == METHOD_NOT_ALLOWED || s == NOT_IMPLEMENTED;
+  }
+
   public Mono<BalanceOperationResponse> applyBalanceOperation(String accountId, BalanceOperationRequest req) {
     CircuitBreaker cb = circuitBreakerRegistry.circuitBreaker("accounts");
     log.debug("POST Accounts /accounts/{}/balance-ops opId={}", accountId, req.getOperationId());
@@ -65,4 +132,12 @@ public class AccountsClient {
             ex -> new ResponseStatusException(GATEWAY_TIMEOUT, "Timeout Accounts (2s)", ex));
   }
 
+  private static class BatchUnsupportedException extends RuntimeException {
+    private final int status;
+
+    BatchUnsupportedException(int status) {
+      super("Accounts batch lookup not supported: " + status);
+      this.status = status;
+    }
+  }
 }
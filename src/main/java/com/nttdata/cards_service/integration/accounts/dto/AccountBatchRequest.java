@@ -0,0 +1,14 @@
+package com.nttdata.cards_service.integration.accounts.dto;
+
+import lombok.*;
+
+import java.util.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBatchRequest {
+
+    private List<String> ids;
+
+}
@@ -28,13 +28,15 @@ public class CardOperationRequestedConsumer {
   private final AccountsClient accountsClient;              // REST interno a Accounts
   private final CardOperationResultProducer results;
   private final PrimaryBalanceUpdatedProducer balanceEvents;
+  private final FundsUpperBoundCache fundsBound;
 
   // --- DÉBITO (Emisor con tarjeta DEBIT) ---
   @KafkaListener(topics = "${app.topics.card-debit-req}", groupId = "${spring.kafka.consumer.group-id}")
   public void onCardDebitRequested(CardDebitRequestedEvent evt) {
     log.info("[CARDS] debit.requested opId={} cardId={} amount={}", evt.getOperationId(), evt.getCardId(), evt.getAmount());
 
-    repo.findById(evt.getCardId())
+    validateAmount(evt.getAmount())
+        .then(Mono.defer(() -> repo.findById(evt.getCardId())))
         .switchIfEmpty(Mono.error(new IllegalArgumentException("Card not found")))
         .flatMap(card -> {
           if (!DEBIT.equalsIgnoreCase(card.getCardType()))
@@ -44,7 +46,7 @@ public class CardOperationRequestedConsumer {
           return debitOrchestrator.debit(
                   card.getId(),
                   evt.getOperationId(),
-                  evt.getAmount().doubleValue(),
+                  Money.of(evt.getAmount()).toDouble(),
                   "YANKI_P2P_DEBIT",
                   java.util.Map.of("source", "yanki", "use", "p2p", "noRefund", "true"),
                   "purchase"
@@ -69,7 +71,8 @@ public class CardOperationRequestedConsumer {
   public void onCardCreditRequested(CardDebitTransferInRequestedEvent evt) {
     log.info("[CARDS] credit.requested opId={} cardId={} amount={}", evt.getOperationId(), evt.getCardId(), evt.getAmount());
 
-    repo.findById(evt.getCardId())
+    validateAmount(evt.getAmount())
+        .then(Mono.defer(() -> repo.findById(evt.getCardId())))
         .switchIfEmpty(Mono.error(new IllegalArgumentException("Card not found")))
         .flatMap(card -> {
           if (!DEBIT.equalsIgnoreCase(card.getCardType()))
@@ -81,26 +84,36 @@ public class CardOperationRequestedConsumer {
           BalanceOperationRequest req = new BalanceOperationRequest();
           req.setOperationId(evt.getOperationId());
           req.setType("transfer_in");
-          req.setAmount(evt.getAmount().doubleValue());
+          req.setAmount(Money.of(evt.getAmount()).toDouble());
           req.setMetadata(java.util.Map.of("source", "yanki", "use", "p2p"));
 
           return accountsClient.applyBalanceOperation(card.getPrimaryAccountId(), req)
               .map(res -> res)  // contiene newBalance
+              // el saldo cambió: la cota de fondos cacheada deja de ser fiable
+              .flatMap(res -> fundsBound.evict(evt.getCardId()).thenReturn(res))
               .doOnSuccess(res -> {
                 results.publishCreditApplied(evt.getOperationId(), evt.getCardId(), evt.getAmount(), evt.getTraceId());
-                balanceEvents.publish(evt.getCardId(), card.getPrimaryAccountId(), BigDecimal.valueOf(res.getNewBalance()), evt.getTraceId());
+                balanceEvents.publish(evt.getCardId(), card.getPrimaryAccountId(), Money.of(res.getNewBalance()).toBigDecimal(), evt.getTraceId());
               });
         })
         .doOnError(e -> results.publishCreditDenied(evt.getOperationId(), evt.getCardId(), e.getMessage(), evt.getTraceId()))
         .subscribe();
   }
 
+  // Un evento sin importe o con importe no positivo (ya en céntimos) se deniega sin tocar cuentas
+  private static Mono<Void> validateAmount(BigDecimal amount) {
+    if (amount == null || Money.toMinor(amount) <= 0)
+      return Mono.error(new IllegalArgumentException("Invalid amount: " + amount));
+    return Mono.empty();
+  }
+
   private Mono<Void> publishPrimaryBalance(Card card, String traceId) {
     if (card.getPrimaryAccountId() == null || card.getPrimaryAccountId().isBlank())
       return Mono.empty();
     // leer saldo actual para el evento (GET account)
     return accountsClient.getAccount(card.getPrimaryAccountId())
-        .doOnNext(acc -> balanceEvents.publish(card.getId(), acc.getId(), BigDecimal.valueOf(acc.getBalance()), traceId))
+        .flatMap(acc -> fundsBound.evict(card.getId()).thenReturn(acc))
+        .doOnNext(acc -> balanceEvents.publish(card.getId(), acc.getId(), Money.of(acc.getBalance()).toBigDecimal(), traceId))
         .then();
   }
 }
\ No newline at end of file
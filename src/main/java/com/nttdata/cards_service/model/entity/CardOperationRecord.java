@@ -0,0 +1,26 @@
+package com.nttdata.cards_service.model.entity;
+
+import com.nttdata.cards_service.model.CardOperationResponse;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.OffsetDateTime;
+
+@Data
+
+@Document(collection = "card_operations")
+@CompoundIndex(name = "cardId_operationId", def = "{'cardId': 1, 'operationId': 1}", unique = true)
+public class CardOperationRecord {
+    @Id
+    private String id;
+
+    private String cardId;
+    private String operationId;
+    private String kind;                      // DEBIT_PAYMENT | DEBIT_WITHDRAWAL | PAY_CREDIT
+    @Indexed(name = "createdAt_ttl", expireAfter = "#{@environment.getProperty('cards.operations.ttl', 'P30D')}")
+    private OffsetDateTime createdAt;
+    private CardOperationResponse result;
+}
@@ -0,0 +1,34 @@
+package com.nttdata.cards_service.model.entity;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+
+@Document(collection = "card_compensations")
+@CompoundIndex(name = "status_updatedAt", def = "{'status': 1, 'updatedAt': 1}")
+public class CompensationRecord {
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String DONE = "DONE";
+
+    @Id
+    private String id;                        // cardId:operationId
+
+    private String cardId;
+    private String operationId;
+    private String reason;
+    private List<CardOperationResponseSlices> slices;
+    private List<Integer> doneSlices = new ArrayList<>(); // índices ya devueltos ($addToSet)
+    private String status = IN_PROGRESS;      // IN_PROGRESS | DONE
+
+    private OffsetDateTime createdAt;
+    private OffsetDateTime updatedAt;         // avance de la compensación; también lease de la recuperación
+    private OffsetDateTime completedAt;
+}
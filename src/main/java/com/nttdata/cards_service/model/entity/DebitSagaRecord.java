@@ -0,0 +1,48 @@
+package com.nttdata.cards_service.model.entity;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+
+@Document(collection = "debit_sagas")
+@CompoundIndex(name = "state_updatedAt", def = "{'state': 1, 'updatedAt': 1}")
+public class DebitSagaRecord {
+    // PLANNED -> SLICES_APPLIED -> LOGGED -> DONE; si falla un slice: COMPENSATING -> COMPENSATED
+    public static final String PLANNED = "PLANNED";
+    public static final String SLICES_APPLIED = "SLICES_APPLIED";
+    public static final String LOGGED = "LOGGED";
+    public static final String DONE = "DONE";
+    public static final String COMPENSATING = "COMPENSATING";
+    public static final String COMPENSATED = "COMPENSATED";
+    // solo en memoria: la saga se borró sin mover dinero y ya no hay nada que retomar
+    public static final String DISCARDED = "DISCARDED";
+
+    @Id
+    private String id;                                  // cardId:operationId
+
+    private String cardId;
+    private String operationId;
+    private String kind;
+    private String txType;
+    private double amount;
+    private Map<String, Object> metadata;
+    private List<CardOperationResponseSlices> plan;     // se escribe antes del primer retiro
+    private List<CardOperationResponseSlices> applied;  // slices retirados (con comisión)
+    private String state = PLANNED;
+
+    private OffsetDateTime createdAt;
+    private OffsetDateTime updatedAt;                   // también actúa como lease de la recuperación
+    // solo existe en estados finales: las sagas abiertas nunca expiran. La saga es la reserva del operationId,
+    // así que se conserva lo mismo que el resultado en card_operations
+    @Indexed(name = "completedAt_ttl", expireAfter = "#{@environment.getProperty('cards.operations.ttl', 'P30D')}")
+    private OffsetDateTime completedAt;
+}
@@ -0,0 +1,35 @@
+package com.nttdata.cards_service.model.entity;
+
+import com.nttdata.cards_service.integration.transactions.dto.TxPost;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.OffsetDateTime;
+
+@Data
+
+@Document(collection = "tx_outbox")
+@CompoundIndex(name = "status_nextAttemptAt", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class TxOutboxRecord {
+    public static final String PENDING = "PENDING";
+    public static final String FAILED = "FAILED";
+    public static final String SENT = "SENT";
+
+    @Id
+    private String id;
+
+    private String cardId;                // tarjeta cuyos movimientos cambian al entregarse
+    private TxPost post;                  // cuerpo a enviar a POST /transactions
+    private String status = PENDING;      // PENDING | SENT | FAILED (agotó reintentos)
+    private int attempts;
+    private String lastError;
+
+    private OffsetDateTime createdAt;
+    private OffsetDateTime nextAttemptAt; // también actúa como lease mientras un nodo lo envía
+    // solo en SENT: el id entregado se conserva para que un reencolado idempotente no lo reenvíe
+    @Indexed(name = "sentAt_ttl", expireAfter = "#{@environment.getProperty('cards.tx-outbox.sent-ttl', 'P7D')}")
+    private OffsetDateTime sentAt;
+}
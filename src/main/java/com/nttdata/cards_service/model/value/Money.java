@@ -0,0 +1,73 @@
+package com.nttdata.cards_service.model.value;
+
+import java.math.*;
+
+// Importe en céntimos (long). Los DTO (API, Accounts, eventos) siguen usando double/BigDecimal:
+// se convierte al entrar y al salir, y toda la aritmética intermedia (reparto, comisiones, límites,
+// cota de fondos) se hace sobre long con los métodos estáticos, sin crear objetos en los bucles calientes.
+// La instancia solo sirve para convertir un importe de entrada a double/BigDecimal redondeado a céntimos.
+public final class Money {
+
+  private static final int SCALE = 2;
+  private static final long MINOR_PER_UNIT = 100L;
+
+  private final long minor;
+
+  private Money(long minor) {
+    this.minor = minor;
+  }
+
+  public static Money of(double amount) {
+    return new Money(toMinor(amount));
+  }
+
+  public static Money of(BigDecimal amount) {
+    return new Money(toMinor(amount));
+  }
+
+  // null cuenta como cero, igual que un saldo o comisión ausente
+  public static long toMinor(Double amount) {
+    return amount == null ? 0L : toMinor(amount.doubleValue());
+  }
+
+  public static long toMinor(double amount) {
+    return Math.round(amount * MINOR_PER_UNIT);
+  }
+
+  // Un importe de entrada ausente no es cero: quien llama debe validarlo antes
+  public static long toMinor(BigDecimal amount) {
+    if (amount == null) throw new IllegalArgumentException("Importe ausente");
+    return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+  }
+
+  public static double toDouble(long minor) {
+    return minor / (double) MINOR_PER_UNIT;
+  }
+
+  public long minor() {
+    return minor;
+  }
+
+  public double toDouble() {
+    return toDouble(minor);
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minor, SCALE);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Money && ((Money) o).minor == minor;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(minor);
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString();
+  }
+}
@@ -0,0 +1,9 @@
+package com.nttdata.cards_service.repository;
+
+import com.nttdata.cards_service.model.entity.CardOperationRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface CardOperationRepository extends ReactiveMongoRepository<CardOperationRecord, String> {
+    Mono<CardOperationRecord> findByCardIdAndOperationId(String cardId, String operationId);
+}
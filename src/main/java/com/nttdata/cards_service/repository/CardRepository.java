@@ -4,6 +4,6 @@ import com.nttdata.cards_service.model.entity.Card;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-public interface CardRepository extends ReactiveMongoRepository<Card, String> {
+public interface CardRepository extends ReactiveMongoRepository<Card, String>, CardRepositoryCustom {
     Flux<Card> findByCustomerId(String customerId);
 }
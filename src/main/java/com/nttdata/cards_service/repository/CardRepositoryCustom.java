@@ -0,0 +1,10 @@
+package com.nttdata.cards_service.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+
+// Escrituras puntuales sobre la tarjeta sin reescribir el documento completo
+public interface CardRepositoryCustom {
+    Mono<Void> touchUpdatedDate(String cardId, OffsetDateTime updatedDate);
+}
@@ -0,0 +1,26 @@
+package com.nttdata.cards_service.repository;
+
+import com.nttdata.cards_service.model.entity.Card;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongo;
+
+    // $set directo: no serializa la tarjeta ni compite con el @Version de otras escrituras
+    @Override
+    public Mono<Void> touchUpdatedDate(String cardId, OffsetDateTime updatedDate) {
+        return mongo.updateFirst(query(where("_id").is(cardId)),
+                        Update.update("updatedDate", updatedDate), Card.class)
+                .then();
+    }
+}
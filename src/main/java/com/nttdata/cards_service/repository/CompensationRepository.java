@@ -0,0 +1,13 @@
+package com.nttdata.cards_service.repository;
+
+import com.nttdata.cards_service.model.entity.CompensationRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.OffsetDateTime;
+
+public interface CompensationRepository extends ReactiveMongoRepository<CompensationRecord, String> {
+    Flux<CompensationRecord> findByStatusAndUpdatedAtLessThanEqualOrderByUpdatedAtAsc(
+            String status, OffsetDateTime before, Pageable page);
+}
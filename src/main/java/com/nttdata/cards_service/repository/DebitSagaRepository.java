@@ -0,0 +1,14 @@
+package com.nttdata.cards_service.repository;
+
+import com.nttdata.cards_service.model.entity.DebitSagaRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+public interface DebitSagaRepository extends ReactiveMongoRepository<DebitSagaRecord, String> {
+    Flux<DebitSagaRecord> findByStateInAndUpdatedAtLessThanEqualOrderByUpdatedAtAsc(
+            Collection<String> states, OffsetDateTime before, Pageable page);
+}
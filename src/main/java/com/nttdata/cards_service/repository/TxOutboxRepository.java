@@ -0,0 +1,13 @@
+package com.nttdata.cards_service.repository;
+
+import com.nttdata.cards_service.model.entity.TxOutboxRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.OffsetDateTime;
+
+public interface TxOutboxRepository extends ReactiveMongoRepository<TxOutboxRecord, String> {
+    Flux<TxOutboxRecord> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+            String status, OffsetDateTime now, Pageable page);
+}
@@ -2,37 +2,58 @@ package com.nttdata.cards_service.service;
 
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.model.value.Money;
 public final class CardDomainUtils {
+    // Hasta este tamaño el duplicado se busca recorriendo la lista (sin HashSet)
+    private static final int LINEAR_DEDUPE_MAX = 8;
+
     private CardDomainUtils() {
     }
 
+    // Principal primero, sin nulos ni duplicados, conservando el orden; se llama en cada débito,
+    // consulta de movimientos y mapeo, así que evita streams y LinkedList
     public static List<String> normalizeAccounts(String primary, List<String> accounts) {
-        return Stream.concat(Stream.ofNullable(primary), accounts == null ? Stream.empty() : accounts.stream())
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toCollection(LinkedList::new));
+        int size = accounts == null ? 0 : accounts.size();
+        List<String> out = new ArrayList<>(size + 1);
+        if (primary != null) out.add(primary);
+        if (size == 0) return out;
+
+        Set<String> seen = size + 1 > LINEAR_DEDUPE_MAX ? new HashSet<>(out) : null;
+        for (int i = 0; i < size; i++) {
+            String a = accounts.get(i);
+            if (a == null) continue;
+            if (seen != null ? seen.add(a) : !out.contains(a)) out.add(a);
+        }
+        return out;
     }
 
-    public static List<CardOperationResponseSlices> planSlices(double amountNeeded, LinkedHashMap<String, Double> balancesInOrder) {
-        double remaining = amountNeeded;
-        List<CardOperationResponseSlices> slices = new ArrayList<>();
-        for (Map.Entry<String, Double> e : balancesInOrder.entrySet()) {
-            if (remaining <= 0) break;
-            double bal = e.getValue() == null ? 0.0 : e.getValue();
-            double take = Math.min(bal, remaining);
+    // Reparto en céntimos: sin residuos de coma flotante que simulen saldo insuficiente.
+    // Importe y saldos ya convertidos (Money.toMinor) en arrays paralelos, mismo orden en ambos
+    public static List<CardOperationResponseSlices> planSlices(long amountMinor, String[] accountIds, long[] balancesMinor) {
+        long remaining = amountMinor;
+        // como mucho un slice por cuenta: sin realojar la lista
+        List<CardOperationResponseSlices> slices = new ArrayList<>(accountIds.length);
+        for (int i = 0; i < accountIds.length && remaining > 0; i++) {
+            long take = takeFrom(balancesMinor[i], remaining);
             if (take > 0) {
-                CardOperationResponseSlices slice = new CardOperationResponseSlices();
-                slice.setAccountId(e.getKey());
-                slice.setAmount(take);
-                slices.add(slice);
-
+                slices.add(slice(accountIds[i], take));
                 remaining -= take;
             }
         }
         if (remaining > 0) throw new IllegalStateException("Saldo insuficiente en cuentas asociadas");
         return Collections.unmodifiableList(slices);
     }
-}
\ No newline at end of file
+
+    // Céntimos que se tomarían de una cuenta con ese saldo; misma aritmética que planSlices
+    public static long takeFrom(long balanceMinor, long remainingMinor) {
+        return Math.max(0L, Math.min(balanceMinor, remainingMinor));
+    }
+
+    private static CardOperationResponseSlices slice(String accountId, long amountMinor) {
+        CardOperationResponseSlices slice = new CardOperationResponseSlices();
+        slice.setAccountId(accountId);
+        slice.setAmount(Money.toDouble(amountMinor));
+        return slice;
+    }
+}
@@ -1,28 +1,36 @@
 package com.nttdata.cards_service.service;
 
 import com.nttdata.cards_service.model.entity.Card;
+import com.nttdata.cards_service.model.entity.CardOperationRecord;
 import com.nttdata.cards_service.model.value.StoredOperation;
 
-import java.util.ArrayList;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public final class CardOps {
     private CardOps(){}
+    // Lista embebida en la tarjeta: solo se lee como respaldo de operaciones anteriores a card_operations
     public static Optional<StoredOperation> findOperation(Card card, String opId) {
         var ops = card.getOperations();
         if (ops == null) return Optional.empty();
         return ops.stream().filter(o -> opId.equals(o.getId())).findFirst();
     }
 
-    public static void upsertOperation(Card card, StoredOperation op, int keepLastN) {
-        var ops = card.getOperations();
-        if (ops == null) ops = new ArrayList<>();
-        ops = ops.stream()
-                .filter(prev -> !op.getId().equals(prev.getId()))
-                .collect(Collectors.toCollection(ArrayList::new));
-        ops.add(0, op);
-        if (ops.size() > keepLastN) { ops = ops.stream().limit(keepLastN).collect(Collectors.toList()); }
-        card.setOperations(ops);
+    public static CardOperationRecord toRecord(String cardId, StoredOperation op) {
+        CardOperationRecord r = new CardOperationRecord();
+        r.setCardId(cardId);
+        r.setOperationId(op.getId());
+        r.setKind(op.getKind());
+        r.setCreatedAt(op.getCreatedAt());
+        r.setResult(op.getResult());
+        return r;
+    }
+
+    public static StoredOperation toStoredOperation(CardOperationRecord r) {
+        StoredOperation op = new StoredOperation();
+        op.setId(r.getOperationId());
+        op.setKind(r.getKind());
+        op.setCreatedAt(r.getCreatedAt());
+        op.setResult(r.getResult());
+        return op;
     }
 }
@@ -4,6 +4,8 @@ import com.nttdata.cards_service.model.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 public interface CardService {
 
     //Registrar una nueva tarjeta (Si el cliente tiene deudas vencidas, se rechaza)
@@ -12,6 +14,8 @@ public interface CardService {
     Flux<CardResponse> listCards();
     //Obtener una tarjeta por su id
     Mono<CardResponse> getCardById(String id);
+    //Obtener varias tarjetas por id (las existentes, en el orden pedido)
+    Flux<CardResponse> getCardsByIds(Collection<String> ids);
     //Actualizar tarjeta
     Mono<CardResponse> updateCard(String id, CardRequest request);
     //Eliminar tarjeta
@@ -0,0 +1,142 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.integration.accounts.*;
+import com.nttdata.cards_service.integration.accounts.dto.*;
+import com.nttdata.cards_service.integration.transactions.dto.*;
+import com.nttdata.cards_service.model.*;
+import com.nttdata.cards_service.model.entity.*;
+import com.nttdata.cards_service.repository.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import lombok.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.*;
+import static org.springframework.data.mongodb.core.query.Query.*;
+
+// Devuelve a cada cuenta lo debitado por los slices de una operación.
+// Los slices son independientes, así que los depósitos van en paralelo; cada slice devuelto
+// queda anotado en card_compensations y una nueva llamada (o CompensationRecovery) retoma solo los pendientes.
+@Service
+@RequiredArgsConstructor
+public class CompensationExecutor {
+
+  private final CompensationRepository repo;
+  private final ReactiveMongoTemplate mongo;
+  private final AccountsClient accounts;
+  private final TransactionOutbox outbox;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${cards.compensation.concurrency:4}")
+  private int concurrency = 4;
+
+  public Mono<Void> compensate(String cardId, String operationId, List<CardOperationResponseSlices> slices, String reason) {
+    return Mono.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      return start(cardId, operationId, slices, reason)
+          .flatMap(this::run)
+          .doOnSuccess(v -> sample.stop(timer("success")))
+          .doOnError(e -> sample.stop(timer("error")));
+    });
+  }
+
+  // Retoma una compensación abandonada; una ejecución concurrente es inocua porque cada paso es idempotente
+  public Mono<Void> resume(CompensationRecord r) {
+    return run(r);
+  }
+
+  // Compensaciones en curso sin avance desde 'before' (el proceso que las llevaba murió o se colgó)
+  public Flux<CompensationRecord> stale(OffsetDateTime before, int limit) {
+    return repo.findByStatusAndUpdatedAtLessThanEqualOrderByUpdatedAtAsc(CompensationRecord.IN_PROGRESS, before,
+        PageRequest.of(0, Math.max(1, limit)));
+  }
+
+  // Solo un nodo recupera cada compensación: mueve updatedAt si nadie la tocó desde que se leyó
+  public Mono<Boolean> claim(CompensationRecord r) {
+    OffsetDateTime now = OffsetDateTime.now();
+    Query q = query(where("_id").is(r.getId())
+        .and("status").is(CompensationRecord.IN_PROGRESS)
+        .and("updatedAt").is(r.getUpdatedAt()));
+    return mongo.updateFirst(q, Update.update("updatedAt", now), CompensationRecord.class)
+        .map(res -> {
+          if (res.getModifiedCount() != 1) return false;
+          r.setUpdatedAt(now);
+          return true;
+        });
+  }
+
+  // Registro de progreso: si ya existe (reintento o reanudación) se continúa desde él
+  private Mono<CompensationRecord> start(String cardId, String operationId,
+                                         List<CardOperationResponseSlices> slices, String reason) {
+    String id = cardId + ":" + operationId;
+    return repo.findById(id)
+        .switchIfEmpty(Mono.defer(() -> {
+          CompensationRecord r = new CompensationRecord();
+          r.setId(id);
+          r.setCardId(cardId);
+          r.setOperationId(operationId);
+          r.setReason(reason);
+          r.setSlices(slices);
+          r.setCreatedAt(OffsetDateTime.now());
+          r.setUpdatedAt(r.getCreatedAt());
+          return repo.insert(r)
+              .onErrorResume(DuplicateKeyException.class, ex -> repo.findById(id));
+        }));
+  }
+
+  private Mono<Void> run(CompensationRecord r) {
+    if (CompensationRecord.DONE.equals(r.getStatus())) return Mono.empty();
+    List<CardOperationResponseSlices> slices = r.getSlices();
+    Set<Integer> done = new HashSet<>(r.getDoneSlices());
+    if (!done.isEmpty()) meterRegistry.counter("cards.compensation.resumed").increment();
+
+    return Flux.range(0, slices.size())
+        .filter(idx -> !done.contains(idx))
+        .flatMapDelayError(idx -> reverseSlice(r, idx, slices.get(idx)), Math.max(1, concurrency), 1)
+        // ids deterministas (id#rev#i): si se repite tras una caída no se duplican las reversas
+        .then(Mono.defer(() -> outbox.enqueue(r.getCardId(), r.getId() + "#rev", reversals(slices))))
+        .then(Mono.defer(() -> mongo.updateFirst(query(where("_id").is(r.getId())),
+            new Update().set("status", CompensationRecord.DONE).set("completedAt", OffsetDateTime.now()),
+            CompensationRecord.class)))
+        .then();
+  }
+
+  // Depósito idempotente (opId#comp#idx) y marca del slice como devuelto
+  private Mono<Void> reverseSlice(CompensationRecord r, int idx, CardOperationResponseSlices s) {
+    BalanceOperationRequest req = new BalanceOperationRequest();
+    req.setOperationId(r.getOperationId() + "#comp#" + idx);
+    req.setType("deposit");
+    req.setAmount(s.getAmount());
+    req.setMetadata(Map.of("compensationOf", r.getOperationId(), "reason", r.getReason()));
+
+    return accounts.applyBalanceOperation(s.getAccountId(), req)
+        .then(Mono.defer(() -> mongo.updateFirst(query(where("_id").is(r.getId())),
+            new Update().addToSet("doneSlices", idx).set("updatedAt", OffsetDateTime.now()), CompensationRecord.class)))
+        .then();
+  }
+
+  // Una transacción de reversa por slice, encoladas juntas al terminar los depósitos
+  private static List<TxPost> reversals(List<CardOperationResponseSlices> slices) {
+    return slices.stream().map(s -> {
+      TxPost rev = new TxPost();
+      rev.setType("reversal");
+      rev.setAmount(s.getAmount());
+      rev.setReceiver(TxProduct.of(s.getAccountId(), "savings_account"));
+      return rev;
+    }).collect(Collectors.toList());
+  }
+
+  private Timer timer(String outcome) {
+    return meterRegistry.timer("cards.compensation.duration", "outcome", outcome);
+  }
+}
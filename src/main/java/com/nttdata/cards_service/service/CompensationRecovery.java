@@ -0,0 +1,61 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.model.entity.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+// Retoma las compensaciones que quedaron IN_PROGRESS (caída del nodo entre depósitos, Accounts caído...).
+// Corre poco después del arranque y luego de forma periódica, igual que DebitSagaRecovery.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompensationRecovery {
+
+  private final CompensationExecutor compensations;
+
+  // Una compensación en curso avanza en milisegundos; sin cambios en este tiempo se da por abandonada
+  @Value("${cards.compensation.stale-after:PT1M}")
+  private Duration staleAfter = Duration.ofMinutes(1);
+  @Value("${cards.compensation.batch-size:20}")
+  private int batchSize = 20;
+
+  private final AtomicBoolean recovering = new AtomicBoolean(false);
+
+  @Scheduled(initialDelayString = "${cards.compensation.recovery-initial-delay:PT10S}",
+      fixedDelayString = "${cards.compensation.recovery-interval:PT30S}")
+  public void scheduledRecovery() {
+    if (!recovering.compareAndSet(false, true)) return;
+    recover()
+        .doFinally(s -> recovering.set(false))
+        .subscribe(n -> {
+          if (n > 0) log.info("[COMP] {} compensaciones recuperadas", n);
+        }, e -> log.warn("[COMP] Error recuperando compensaciones: {}", e.getMessage()));
+  }
+
+  // Procesa un lote de compensaciones abandonadas; devuelve cuántas se terminaron
+  public Mono<Long> recover() {
+    return compensations.stale(OffsetDateTime.now().minus(staleAfter), batchSize)
+        .concatMap(r -> compensations.claim(r)
+            .flatMap(claimed -> claimed ? resume(r) : Mono.just(false)))
+        .filter(Boolean::booleanValue)
+        .count();
+  }
+
+  private Mono<Boolean> resume(CompensationRecord r) {
+    return compensations.resume(r)
+        .thenReturn(true)
+        .doOnSuccess(ok -> log.info("[COMP] {} recuperada ({} de {} slices ya devueltos)",
+            r.getId(), r.getDoneSlices().size(), r.getSlices().size()))
+        .onErrorResume(ex -> {
+          log.warn("[COMP] No se pudo recuperar {}: {}", r.getId(), ex.getMessage());
+          return Mono.just(false);
+        });
+  }
+}
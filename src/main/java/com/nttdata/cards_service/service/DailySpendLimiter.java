@@ -0,0 +1,96 @@
+package com.nttdata.cards_service.service;
+
+import lombok.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+import static com.nttdata.cards_service.cache.CacheKeys.*;
+
+// Acumulado diario de compras por tarjeta, en céntimos: INCRBY en Redis con expiración a medianoche.
+// Una copia local del último acumulado conocido solo sirve para rechazar sin ir a Redis cuando el
+// importe ya no cabe; caduca pronto porque otro nodo puede haber liberado reservas. Aprobar exige
+// siempre el INCRBY: lo que decide es el total que devuelve Redis, nunca la copia local.
+@Service
+@RequiredArgsConstructor
+public class DailySpendLimiter {
+
+  private final ReactiveStringRedisTemplate redis;
+
+  @Value("${cards.daily-limit.zone:UTC}")
+  private ZoneId zone = ZoneOffset.UTC;
+  @Value("${cards.daily-limit.local-ttl:PT5S}")
+  private Duration localTtl = Duration.ofSeconds(5);
+
+  private final ConcurrentMap<String, Known> lastKnown = new ConcurrentHashMap<>();
+  private volatile LocalDate lastKnownDay;
+
+  public LocalDate today() {
+    return LocalDate.now(zone);
+  }
+
+  // Reserva el importe en el acumulado del día; si supera el límite la reserva se deshace
+  public Mono<Void> reserve(String cardId, LocalDate day, long amountMinor, long limitMinor) {
+    return Mono.defer(() -> {
+      String key = key(cardId, day);
+      Long known = known(key, day);
+      if (known != null && known + amountMinor > limitMinor) return Mono.error(exceeded());
+
+      return redis.opsForValue().increment(key, amountMinor)
+          // la expiración se fija cuando este INCRBY creó la clave, sin depender de la copia local
+          .flatMap(total -> (total == amountMinor ? redis.expire(key, untilEndOf(day)).then() : Mono.<Void>empty())
+              .then(Mono.defer(() -> {
+                remember(key, total);
+                return total > limitMinor
+                    ? release(cardId, day, amountMinor).then(Mono.<Void>error(exceeded()))
+                    : Mono.<Void>empty();
+              })));
+    });
+  }
+
+  // Devuelve al acumulado una reserva cuyo débito no llegó a aplicarse
+  public Mono<Void> release(String cardId, LocalDate day, long amountMinor) {
+    String key = key(cardId, day);
+    return redis.opsForValue().increment(key, -amountMinor)
+        .doOnNext(total -> remember(key, total))
+        .then();
+  }
+
+  private Long known(String key, LocalDate day) {
+    // al cambiar de día se descartan los acumulados locales del día anterior
+    if (!day.equals(lastKnownDay)) {
+      lastKnown.clear();
+      lastKnownDay = day;
+    }
+    Known k = lastKnown.get(key);
+    if (k == null || k.expiresAt < System.nanoTime()) return null;
+    return k.total;
+  }
+
+  private void remember(String key, long total) {
+    lastKnown.put(key, new Known(total, System.nanoTime() + localTtl.toNanos()));
+  }
+
+  private Duration untilEndOf(LocalDate day) {
+    Duration d = Duration.between(Instant.now(), day.plusDays(1).atStartOfDay(zone).toInstant());
+    return d.isNegative() || d.isZero() ? Duration.ofSeconds(1) : d;
+  }
+
+  private static String key(String cardId, LocalDate day) {
+    return DAILY_SPEND + ":" + cardId + ":" + day;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Known {
+    private final long total;
+    private final long expiresAt;
+  }
+
+  private static IllegalStateException exceeded() {
+    return new IllegalStateException("Daily purchase limit exceeded");
+  }
+}
@@ -1,19 +1,26 @@
 package com.nttdata.cards_service.service;
 
+import com.nttdata.cards_service.cache.*;
 import com.nttdata.cards_service.integration.accounts.*;
 import com.nttdata.cards_service.integration.accounts.dto.*;
-import com.nttdata.cards_service.integration.transactions.*;
 import com.nttdata.cards_service.integration.transactions.dto.*;
 import com.nttdata.cards_service.model.*;
 import com.nttdata.cards_service.model.entity.*;
 import com.nttdata.cards_service.model.value.*;
 import com.nttdata.cards_service.repository.*;
+import com.nttdata.cards_service.service.slicing.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
 import lombok.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.*;
 import org.springframework.stereotype.*;
 import reactor.core.publisher.*;
+import reactor.util.function.*;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
 
 import static com.nttdata.cards_service.service.CardDomainUtils.*;
@@ -23,20 +30,40 @@ import static com.nttdata.cards_service.service.CardOps.*;
 @RequiredArgsConstructor
 public class DebitOrchestratorService {
 
-  private static final int KEEP_LAST_OPS = 200;
-
   private final CardRepository cardRepo;
+  private final CardOperationRepository operationRepo;
   private final AccountsClient accounts;
-  private final TransactionsClient tx;
+  private final TransactionOutbox outbox;
+  private final DailySpendLimiter dailySpend;
+  private final FundsUpperBoundCache fundsBound;
+  private final CardsCacheService cache;
+  private final CompensationExecutor compensations;
+  private final DebitSagaLog sagas;
+  private final SlicePlanners planners;
+  private final MeterRegistry meterRegistry;
 
+  // direct: un retiro por slice | two-phase: retenciones en paralelo y captura solo si todas se conceden
+  @Value("${cards.debit.mode:direct}")
+  private String mode = "direct";
+  @Value("${cards.debit.hold-concurrency:4}")
+  private int holdConcurrency = 4;
 
+  // Reintentos concurrentes del mismo cardId+operationId comparten un único débito en curso
+  private final SingleFlight<StoredOperation> inFlightDebits = new SingleFlight<>();
   public Mono<StoredOperation> debit(String cardId, String operationId, double amount,
                                      String opKind, Map<String, Object> metadata, String txType) {
 
-    return cardRepo.findById(cardId)
-        .switchIfEmpty(Mono.error(new IllegalArgumentException("Card not found")))
-        .flatMap(card -> findOperation(card, operationId).map(Mono::just)
-            .orElseGet(() -> process(card, operationId, amount, opKind, metadata, txType)));
+    return inFlightDebits.execute(cardId + ":" + operationId,
+        () -> timed("card_load", cardRepo.findById(cardId))
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Card not found")))
+            .flatMap(card -> findOperation(card, operationId).map(Mono::just)
+                .orElseGet(() -> process(card, operationId, amount, opKind, metadata, txType)))
+            // Sin consulta previa: un reintento choca con el _id de la saga al insertarla (o lo rechazan
+            // antes límites o fondos), y solo entonces se busca el resultado ya registrado
+            .onErrorResume(ex -> timed("idempotency_lookup", operationRepo.findByCardIdAndOperationId(cardId, operationId))
+                .map(CardOps::toStoredOperation)
+                .switchIfEmpty(Mono.error(ex))),
+        () -> meterRegistry.counter("cards.debit.singleflight.coalesced").increment());
   }
 
   private Mono<StoredOperation> process(Card card, String operationId, double amount,
@@ -48,108 +75,289 @@ public class DebitOrchestratorService {
     if (card.getStatus() != CardResponse.StatusEnum.ACTIVE)
       return Mono.error(new IllegalStateException("Card is not ACTIVE"));
 
+    // importes en céntimos desde aquí: límites, cota de fondos y reparto comparan sin coma flotante
+    long amountMinor = Money.toMinor(amount);
+
     // Validación de límites (simple; puedes extenderla con límites por transacción/día)
     if ("withdrawal".equalsIgnoreCase(txType) && card.getLimits() != null && card.getLimits().getAtmWithdrawalLimit() != null) {
       Double max = card.getLimits().getAtmWithdrawalLimit();
-      if (max != null && amount > max) {
+      if (max != null && amountMinor > Money.toMinor(max)) {
         return Mono.error(new IllegalStateException("ATM withdrawal limit exceeded"));
       }
     }
 
     List<String> ordered = normalizeAccounts(card.getPrimaryAccountId(), card.getAccounts());
+    SlicePlanner planner = planners.forCard(card);
 
-    return Flux.fromIterable(ordered)
-        .concatMap(accId ->
-            accounts.getAccount(accId)
-                .map(a -> new AbstractMap.SimpleEntry<>(accId, a.getBalance()))
-        )
-        // Mapa preservando orden de asociación: accountId -> balance
-        .collectMap(Map.Entry::getKey, Map.Entry::getValue, java.util.LinkedHashMap::new)
+    Mono<DebitSagaRecord> applied = timed("balance_fetch", fetchBalances(card.getId(), ordered, amountMinor, planner.needsAllBalances()))
         .flatMap((var balances) -> {
-          List<CardOperationResponseSlices> plan = planSlices(amount, (LinkedHashMap<String, Double>) balances);
-
-          return Flux.fromIterable(plan)
-              .index()
-              .concatMap(t -> {
-                long idx = t.getT1();
-                CardOperationResponseSlices s = t.getT2();
-
-                BalanceOperationRequest req = new BalanceOperationRequest();
-                req.setOperationId(operationId + "#" + idx);
-                req.setType("withdrawal");
-                req.setAmount(s.getAmount());
-                req.setMetadata(metadata);
-
-                return accounts.applyBalanceOperation(s.getAccountId(), req)
-                    .map(resp -> {
-                      CardOperationResponseSlices x = new CardOperationResponseSlices();
-                      x.setAccountId(s.getAccountId());
-                      x.setAmount(s.getAmount());
-                      x.setCommissionApplied(resp.getCommissionApplied() == null ? 0.0 : resp.getCommissionApplied());
-                      return x;
-                    });
-              })
-              .collectList()
-              .flatMap((List<CardOperationResponseSlices> slices) ->
-                  Flux.fromIterable(slices)
-                      .concatMap(s -> {
-                        // transacción por slice
-                        TxPost post = new TxPost();
-                        post.setType(txType); // withdrawal / purchase / payment
-                        post.setAmount(s.getAmount());
-                        post.setSender(TxProduct.of(s.getAccountId(), "savings_account"));
-                        return tx.create(post);
-                      })
-                      .then(Mono.defer(() -> {
-                        double commission = slices.stream()
-                            .collect(Collectors.summingDouble(CardOperationResponseSlices::getCommissionApplied));
-
-                        CardOperationResponse result = new CardOperationResponse();
-                        result.setApplied(true);
-                        result.setTotalAmount(amount);
-                        result.setCommissionTotal(commission);
-                        result.setSlices(slices);
-                        result.setMessage("OK");
-
-                        StoredOperation stored = new StoredOperation();
-                        stored.setId(operationId);
-                        stored.setKind(opKind);
-                        stored.setCreatedAt(OffsetDateTime.now());
-                        stored.setResult(result);
-
-                        upsertOperation(card, stored, KEEP_LAST_OPS);
-                        card.setUpdatedDate(OffsetDateTime.now());
-                        return cardRepo.save(card).thenReturn(stored);
-                      }))
-              );
+          DebitSagaRecord saga = new DebitSagaRecord();
+          saga.setCardId(card.getId());
+          saga.setOperationId(operationId);
+          saga.setKind(opKind);
+          saga.setTxType(txType);
+          saga.setAmount(amount);
+          saga.setMetadata(metadata);
+          saga.setPlan(planner.plan(amountMinor, balances.getT1(), balances.getT2()));
+
+          // el plan queda registrado antes del primer retiro
+          return sagas.start(saga).flatMap(started -> timed("slice_apply", applySlices(started)));
         });
+
+    // Límite diario de compras: se reserva antes de consultar Accounts y se libera si el débito no se aplica
+    Double dailyLimit = "purchase".equalsIgnoreCase(txType) && card.getLimits() != null
+        ? card.getLimits().getDailyPurchaseLimit() : null;
+    if (dailyLimit != null) {
+      LocalDate day = dailySpend.today();
+      applied = dailySpend.reserve(card.getId(), day, amountMinor, Money.toMinor(dailyLimit))
+          .then(applied.onErrorResume(ex -> dailySpend.release(card.getId(), day, amountMinor).then(Mono.error(ex))));
+    }
+
+    // Rechazo temprano: si ya se sabe que los fondos no alcanzan no se consulta Accounts
+    Mono<Void> affordable = fundsBound.get(card.getId())
+        .filter(bound -> amountMinor > bound)
+        .flatMap(bound -> Mono.<Void>error(new IllegalStateException("Saldo insuficiente en cuentas asociadas")));
+
+    return affordable.then(applied).flatMap(this::complete);
   }
 
-  // Compensación: deposita a cada cuenta lo debitado y registra una transacción de reversa
-  public Mono<Void> compensate(Card card, String operationId, List<CardOperationResponseSlices> slices, String failedTxType) {
-    return Flux.fromIterable(slices)
+  private Mono<DebitSagaRecord> applySlices(DebitSagaRecord saga) {
+    return "two-phase".equalsIgnoreCase(mode) ? holdAndCapture(saga) : withdrawSlices(saga);
+  }
+
+  // Retira cada slice del plan; si uno falla se devuelve lo ya retirado antes de propagar el error
+  private Mono<DebitSagaRecord> withdrawSlices(DebitSagaRecord saga) {
+    List<CardOperationResponseSlices> done = new ArrayList<>();
+    return Flux.fromIterable(saga.getPlan())
         .index()
-        .concatMap(t -> {
-          long idx = t.getT1();
-          CardOperationResponseSlices s = t.getT2();
-
-          BalanceOperationRequest req = new BalanceOperationRequest();
-          req.setOperationId(operationId + "#comp#" + idx);
-          req.setType("deposit");
-          req.setAmount(s.getAmount());
-          req.setMetadata(Map.of("compensationOf", operationId, "reason", "credits_failed"));
-
-          return accounts.applyBalanceOperation(s.getAccountId(), req)
-              .then(Mono.defer(() -> {
-                TxPost rev = new TxPost();
-                rev.setType("reversal");
-                rev.setAmount(s.getAmount());
-                rev.setReceiver(TxProduct.of(s.getAccountId(), "savings_account"));
-                return tx.create(rev);
-              }));
-        })
+        .concatMap(t -> balanceOperation(saga, t.getT1(), t.getT2(), "withdrawal", "")
+            .map(resp -> appliedSlice(t.getT2(), resp))
+            .doOnNext(done::add))
+        .then(Mono.defer(() -> sagas.slicesApplied(saga, done)))
+        .thenReturn(saga)
+        .onErrorResume(ex -> compensateSaga(saga, done)
+            .onErrorResume(ce -> {
+              ex.addSuppressed(ce);
+              return Mono.empty();
+            })
+            .then(Mono.error(ex)));
+  }
+
+  // Dos fases: se retiene cada slice (en paralelo) y solo si todas las retenciones se conceden
+  // se capturan. Una retención denegada libera las demás sin mover dinero, sin compensaciones.
+  private Mono<DebitSagaRecord> holdAndCapture(DebitSagaRecord saga) {
+    List<CardOperationResponseSlices> plan = saga.getPlan();
+    Set<Integer> held = ConcurrentHashMap.newKeySet();
+    CardOperationResponseSlices[] captured = new CardOperationResponseSlices[plan.size()];
+
+    Mono<Void> holds = Flux.range(0, plan.size())
+        .flatMapDelayError(idx -> balanceOperation(saga, idx, plan.get(idx), "hold", "#hold")
+            .doOnNext(resp -> held.add(idx)), Math.max(1, holdConcurrency), 1)
+        .then()
+        // sin retiros la saga se descarta: la recuperación no debe volver a retener y capturar
+        // un débito que ya se rechazó (y el operationId queda libre para reintentarlo)
+        .onErrorResume(ex -> releaseHolds(saga, held).onErrorResume(re -> {
+          ex.addSuppressed(re);
+          return Mono.empty();
+        }).then(Mono.defer(() -> sagas.discard(saga))).then(Mono.error(ex)));
+
+    Mono<Void> captures = Flux.range(0, plan.size())
+        .flatMapDelayError(idx -> balanceOperation(saga, idx, plan.get(idx), "capture", "")
+            .doOnNext(resp -> {
+              held.remove(idx);
+              captured[idx] = appliedSlice(plan.get(idx), resp);
+            }), Math.max(1, holdConcurrency), 1)
+        .then()
+        // captura parcial: lo capturado se compensa y lo aún retenido se libera
+        .onErrorResume(ex -> {
+          List<CardOperationResponseSlices> done = Arrays.stream(captured)
+              .filter(Objects::nonNull).collect(Collectors.toList());
+          return Mono.whenDelayError(releaseHolds(saga, held), compensateSaga(saga, done))
+              .onErrorResume(ce -> {
+                ex.addSuppressed(ce);
+                return Mono.empty();
+              })
+              .then(Mono.error(ex));
+        });
+
+    return holds
+        .then(captures)
+        .then(Mono.defer(() -> sagas.slicesApplied(saga, Arrays.asList(captured))))
+        .thenReturn(saga);
+  }
+
+  private Mono<Void> releaseHolds(DebitSagaRecord saga, Set<Integer> held) {
+    List<CardOperationResponseSlices> plan = saga.getPlan();
+    return Flux.fromIterable(new ArrayList<>(held))
+        .flatMapDelayError(idx -> balanceOperation(saga, idx, plan.get(idx), "release", "#release"),
+            Math.max(1, holdConcurrency), 1)
         .then();
   }
 
+  private Mono<BalanceOperationResponse> balanceOperation(DebitSagaRecord saga, long idx, CardOperationResponseSlices s,
+                                                          String type, String suffix) {
+    BalanceOperationRequest req = new BalanceOperationRequest();
+    req.setOperationId(saga.getOperationId() + "#" + idx + suffix);
+    req.setType(type);
+    req.setAmount(s.getAmount());
+    req.setMetadata(saga.getMetadata());
+    return accounts.applyBalanceOperation(s.getAccountId(), req);
+  }
+
+  private static CardOperationResponseSlices appliedSlice(CardOperationResponseSlices s, BalanceOperationResponse resp) {
+    CardOperationResponseSlices x = new CardOperationResponseSlices();
+    x.setAccountId(s.getAccountId());
+    x.setAmount(s.getAmount());
+    x.setCommissionApplied(resp.getCommissionApplied() == null ? 0.0 : resp.getCommissionApplied());
+    return x;
+  }
+
+  // Resultado, transacciones y registro de idempotencia de una saga con todos sus slices retirados
+  private Mono<StoredOperation> complete(DebitSagaRecord saga) {
+    List<CardOperationResponseSlices> slices = saga.getApplied();
+    planners.observe(slices);
+    // suma en céntimos: sin residuos al acumular comisiones de varios slices
+    long commission = slices.stream().mapToLong(x -> Money.toMinor(x.getCommissionApplied())).sum();
+
+    CardOperationResponse result = new CardOperationResponse();
+    result.setApplied(true);
+    result.setTotalAmount(saga.getAmount());
+    result.setCommissionTotal(Money.toDouble(commission));
+    result.setSlices(slices);
+    result.setMessage("OK");
+
+    StoredOperation stored = new StoredOperation();
+    stored.setId(saga.getOperationId());
+    stored.setKind(saga.getKind());
+    stored.setCreatedAt(OffsetDateTime.now());
+    stored.setResult(result);
+
+    // transacción por slice: se encola en el outbox a la vez que se registra la operación
+    List<TxPost> posts = slices.stream().map(s -> {
+      TxPost post = new TxPost();
+      post.setType(saga.getTxType()); // withdrawal / purchase / payment
+      post.setAmount(s.getAmount());
+      post.setSender(TxProduct.of(s.getAccountId(), "savings_account"));
+      return post;
+    }).collect(Collectors.toList());
+
+    Mono<Void> logged = recordOperation(saga.getCardId(), stored)
+        .then(Mono.defer(() -> sagas.advance(saga, DebitSagaRecord.LOGGED)));
+    Mono<Void> saved = Mono.whenDelayError(logged, cardRepo.touchUpdatedDate(saga.getCardId(), OffsetDateTime.now()));
+
+    // Sin transacción Mongo: la saga es la fuente de verdad. Hasta que todas estas escrituras terminan
+    // sigue abierta (SLICES_APPLIED/LOGGED) y la recuperación repite complete() desde saga.applied;
+    // cada escritura es idempotente (outbox con ids sagaId#tx#i, índice único de card_operations, $set).
+    // whenDelayError: un fallo al encolar no cancela el guardado de la operación ya aplicada
+    return Mono.whenDelayError(timed("tx_post", outbox.enqueue(saga.getCardId(), saga.getId() + "#tx", posts)),
+            timed("save", saved))
+        // saldos y updatedDate cambiaron; los movimientos se dan de baja al entregarse el outbox
+        .then(Mono.defer(() -> Mono.when(cache.evictCard(saga.getCardId()), cache.evictPrimaryBalance(saga.getCardId()))))
+        .then(Mono.defer(() -> sagas.advance(saga, DebitSagaRecord.DONE)))
+        .thenReturn(stored);
+  }
+
+  // Sin retiros no hay nada que devolver: se descarta la saga y la operación puede reintentarse
+  private Mono<Void> compensateSaga(DebitSagaRecord saga, List<CardOperationResponseSlices> applied) {
+    if (applied == null || applied.isEmpty()) return sagas.discard(saga);
+    return sagas.compensating(saga, applied)
+        .then(Mono.defer(() -> compensations.compensate(saga.getCardId(), saga.getOperationId(), applied, "debit_failed")))
+        .then(Mono.defer(() -> evictBalances(saga.getCardId())))
+        .then(Mono.defer(() -> sagas.advance(saga, DebitSagaRecord.COMPENSATED)));
+  }
+
+  // Recuperación de una saga abandonada. Los operationId por slice son idempotentes en Accounts:
+  // reaplicar el plan no duplica retiros, así que se intenta terminar y, si no se puede, se compensa.
+  public Mono<Void> resume(DebitSagaRecord saga) {
+    return inFlightDebits.execute(saga.getCardId() + ":" + saga.getOperationId(), () -> {
+      switch (saga.getState()) {
+        case DebitSagaRecord.PLANNED:
+          return applySlices(saga).flatMap(this::complete);
+        case DebitSagaRecord.SLICES_APPLIED:
+        case DebitSagaRecord.LOGGED:
+          return complete(saga);
+        case DebitSagaRecord.COMPENSATING:
+          return compensateSaga(saga, saga.getApplied()).then(Mono.empty());
+        default:
+          return Mono.empty();
+      }
+    }, () -> meterRegistry.counter("cards.debit.singleflight.coalesced").increment()).then();
+  }
+
+  // Registro de idempotencia en card_operations; si otro nodo ya lo registró (índice único) se respeta el existente
+  private Mono<StoredOperation> recordOperation(String cardId, StoredOperation stored) {
+    return operationRepo.insert(toRecord(cardId, stored))
+        .thenReturn(stored)
+        .onErrorResume(DuplicateKeyException.class, ex ->
+            operationRepo.findByCardIdAndOperationId(cardId, stored.getId()).map(CardOps::toStoredOperation));
+  }
+
+  // Cuentas y saldos en céntimos (arrays paralelos) en orden de asociación, con solo las cuentas necesarias:
+  // primero la principal sola (cubre la mayoría de compras) y, si no alcanza, el resto
+  // en una sola consulta batch; se deja de pedir saldos en cuanto el importe queda cubierto,
+  // salvo que la estrategia de reparto necesite conocer todas las cuentas.
+  // Si ni todas las cuentas alcanzan, su suma queda como cota de fondos para rechazar reintentos.
+  private Mono<Tuple2<String[], long[]>> fetchBalances(String cardId, List<String> ordered, long amountMinor,
+                                                       boolean all) {
+    return Mono.defer(() -> {
+      String[] ids = new String[ordered.size()];
+      long[] balances = new long[ordered.size()];
+      int[] fetched = {0};
+      long[] remaining = {amountMinor};
+
+      Flux<Map.Entry<String, Double>> head = Flux.fromIterable(ordered).take(1)
+          .concatMap(this::balanceOf);
+      Flux<Map.Entry<String, Double>> tail = ordered.size() < 2 ? Flux.empty()
+          : Flux.defer(() -> accounts.getAccounts(ordered.subList(1, ordered.size())))
+          .flatMapIterable(Map::entrySet)
+          .map(e -> new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue().getBalance()));
+
+      // si hacen falta todas, la principal y el batch se piden a la vez
+      return (all ? Flux.mergeSequential(head, tail) : Flux.concat(head, tail))
+          .doOnNext(e -> {
+            int i = fetched[0]++;
+            ids[i] = e.getKey();
+            balances[i] = Money.toMinor(e.getValue());
+            remaining[0] -= takeFrom(balances[i], remaining[0]);
+          })
+          .takeUntil(e -> !all && remaining[0] <= 0)
+          .then(Mono.defer(() -> {
+            Tuple2<String[], long[]> out = fetched[0] == ids.length ? Tuples.of(ids, balances)
+                : Tuples.of(Arrays.copyOf(ids, fetched[0]), Arrays.copyOf(balances, fetched[0]));
+            return remaining[0] > 0 && fetched[0] == ordered.size()
+                ? fundsBound.remember(cardId, amountMinor - remaining[0]).thenReturn(out)
+                : Mono.just(out);
+          }));
+    });
+  }
+
+  private Mono<Map.Entry<String, Double>> balanceOf(String accountId) {
+    return accounts.getAccount(accountId)
+        .map(a -> new AbstractMap.SimpleEntry<>(accountId, a.getBalance()));
+  }
+
+  // Latencia por etapa del débito: cards.debit.stage{stage, outcome}, con histograma para percentiles en Prometheus
+  private <T> Mono<T> timed(String stage, Mono<T> stageMono) {
+    return Mono.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      return stageMono.doFinally(signal -> sample.stop(Timer.builder("cards.debit.stage")
+          .tag("stage", stage)
+          .tag("outcome", signal == SignalType.ON_ERROR ? "error" : signal == SignalType.CANCEL ? "cancelled" : "success")
+          .publishPercentileHistogram()
+          .register(meterRegistry)));
+    });
+  }
+
+  // Compensación: deposita a cada cuenta lo debitado (en paralelo, reanudable) y registra las reversas
+  public Mono<Void> compensate(Card card, String operationId, List<CardOperationResponseSlices> slices, String failedTxType) {
+    return compensations.compensate(card.getId(), operationId, slices, "credits_failed")
+        .then(Mono.defer(() -> evictBalances(card.getId())));
+  }
+
+  // Tras devolver fondos: la cota y el saldo principal en caché quedan por debajo del real
+  private Mono<Void> evictBalances(String cardId) {
+    return Mono.when(fundsBound.evict(cardId), cache.evictPrimaryBalance(cardId));
+  }
+
 
 }
\ No newline at end of file
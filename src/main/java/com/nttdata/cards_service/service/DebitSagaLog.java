@@ -0,0 +1,95 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.model.*;
+import com.nttdata.cards_service.model.entity.*;
+import com.nttdata.cards_service.repository.*;
+import lombok.*;
+import org.springframework.dao.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.*;
+import static org.springframework.data.mongodb.core.query.Query.*;
+
+// Write-ahead log de los débitos multi-slice (colección debit_sagas)
+@Service
+@RequiredArgsConstructor
+public class DebitSagaLog {
+
+  private static final List<String> OPEN_STATES = List.of(DebitSagaRecord.PLANNED, DebitSagaRecord.SLICES_APPLIED,
+      DebitSagaRecord.LOGGED, DebitSagaRecord.COMPENSATING);
+
+  private final DebitSagaRepository repo;
+  private final ReactiveMongoTemplate mongo;
+
+  // Alta en PLANNED; el _id (cardId:operationId) es la reserva de idempotencia del débito.
+  // Si ya hay una saga la operación no se vuelve a ejecutar: quien llama busca su resultado en card_operations.
+  // Una operación revertida no se reintenta con el mismo operationId (Accounts ya conoce sus retiros por slice).
+  public Mono<DebitSagaRecord> start(DebitSagaRecord saga) {
+    OffsetDateTime now = OffsetDateTime.now();
+    saga.setId(saga.getCardId() + ":" + saga.getOperationId());
+    saga.setState(DebitSagaRecord.PLANNED);
+    saga.setCreatedAt(now);
+    saga.setUpdatedAt(now);
+    return repo.insert(saga)
+        .onErrorResume(DuplicateKeyException.class, ex -> repo.findById(saga.getId())
+            .flatMap(existing -> Mono.error(DebitSagaRecord.COMPENSATED.equals(existing.getState())
+                ? new IllegalStateException("Operation " + saga.getOperationId()
+                    + " failed and was reversed; retry with a new operationId")
+                : new IllegalStateException("Operation " + saga.getOperationId() + " is in progress"))));
+  }
+
+  public Mono<Void> discard(DebitSagaRecord saga) {
+    saga.setState(DebitSagaRecord.DISCARDED);
+    return repo.deleteById(saga.getId());
+  }
+
+  public Mono<Void> slicesApplied(DebitSagaRecord saga, List<CardOperationResponseSlices> applied) {
+    saga.setApplied(applied);
+    return advance(saga, DebitSagaRecord.SLICES_APPLIED, new Update().set("applied", applied));
+  }
+
+  public Mono<Void> compensating(DebitSagaRecord saga, List<CardOperationResponseSlices> applied) {
+    saga.setApplied(applied);
+    return advance(saga, DebitSagaRecord.COMPENSATING, new Update().set("applied", applied));
+  }
+
+  public Mono<Void> advance(DebitSagaRecord saga, String state) {
+    return advance(saga, state, new Update());
+  }
+
+  private Mono<Void> advance(DebitSagaRecord saga, String state, Update update) {
+    OffsetDateTime now = OffsetDateTime.now();
+    update.set("state", state).set("updatedAt", now);
+    if (DebitSagaRecord.DONE.equals(state) || DebitSagaRecord.COMPENSATED.equals(state))
+      update.set("completedAt", now);
+    saga.setState(state);
+    return mongo.updateFirst(query(where("_id").is(saga.getId())), update, DebitSagaRecord.class).then();
+  }
+
+  // Sagas abiertas sin avance desde 'before' (el proceso que las llevaba murió o se colgó)
+  public Flux<DebitSagaRecord> stale(OffsetDateTime before, int limit) {
+    return repo.findByStateInAndUpdatedAtLessThanEqualOrderByUpdatedAtAsc(OPEN_STATES, before,
+        PageRequest.of(0, Math.max(1, limit)));
+  }
+
+  // Solo un nodo recupera cada saga: mueve updatedAt si nadie la tocó desde que se leyó
+  public Mono<Boolean> claim(DebitSagaRecord saga) {
+    OffsetDateTime now = OffsetDateTime.now();
+    Query q = query(where("_id").is(saga.getId())
+        .and("state").is(saga.getState())
+        .and("updatedAt").is(saga.getUpdatedAt()));
+    return mongo.updateFirst(q, Update.update("updatedAt", now), DebitSagaRecord.class)
+        .map(res -> {
+          if (res.getModifiedCount() != 1) return false;
+          saga.setUpdatedAt(now);
+          return true;
+        });
+  }
+}
@@ -0,0 +1,62 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.model.entity.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+// Retoma los débitos cuya saga quedó abierta (caída del nodo entre retiros, error al registrar...).
+// Corre poco después del arranque y luego de forma periódica.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DebitSagaRecovery {
+
+  private final DebitSagaLog sagas;
+  private final DebitOrchestratorService debit;
+
+  // Una saga en curso avanza en milisegundos; sin cambios en este tiempo se da por abandonada
+  @Value("${cards.debit-saga.stale-after:PT1M}")
+  private Duration staleAfter = Duration.ofMinutes(1);
+  @Value("${cards.debit-saga.batch-size:20}")
+  private int batchSize = 20;
+
+  private final AtomicBoolean recovering = new AtomicBoolean(false);
+
+  @Scheduled(initialDelayString = "${cards.debit-saga.recovery-initial-delay:PT10S}",
+      fixedDelayString = "${cards.debit-saga.recovery-interval:PT30S}")
+  public void scheduledRecovery() {
+    if (!recovering.compareAndSet(false, true)) return;
+    recover()
+        .doFinally(s -> recovering.set(false))
+        .subscribe(n -> {
+          if (n > 0) log.info("[SAGA] {} débitos recuperados", n);
+        }, e -> log.warn("[SAGA] Error recuperando débitos: {}", e.getMessage()));
+  }
+
+  // Procesa un lote de sagas abandonadas; devuelve cuántas se cerraron
+  public Mono<Long> recover() {
+    return sagas.stale(OffsetDateTime.now().minus(staleAfter), batchSize)
+        .concatMap(saga -> sagas.claim(saga)
+            .flatMap(claimed -> claimed ? resume(saga) : Mono.just(false)))
+        .filter(Boolean::booleanValue)
+        .count();
+  }
+
+  private Mono<Boolean> resume(DebitSagaRecord saga) {
+    String from = saga.getState();
+    return debit.resume(saga)
+        .thenReturn(true)
+        .doOnSuccess(ok -> log.info("[SAGA] {} recuperada desde {} -> {}", saga.getId(), from, saga.getState()))
+        .onErrorResume(ex -> {
+          log.warn("[SAGA] No se pudo recuperar {} ({}): {}", saga.getId(), from, ex.getMessage());
+          return Mono.just(false);
+        });
+  }
+}
@@ -0,0 +1,60 @@
+package com.nttdata.cards_service.service;
+
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+
+import static com.nttdata.cards_service.cache.CacheKeys.*;
+
+// Cota superior de fondos disponibles por tarjeta, en céntimos (suma de los últimos saldos vistos de sus cuentas).
+// Solo se guarda cuando un débito falla por saldo insuficiente, para rechazar reintentos
+// sin consultar Accounts. Los débitos solo la bajan, así que sigue siendo válida tras ellos;
+// cualquier abono o cambio de cuentas la invalida.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FundsUpperBoundCache {
+
+  private final ReactiveStringRedisTemplate redis;
+
+  @Value("${cards.funds-bound.ttl:PT30S}")
+  private Duration ttl = Duration.ofSeconds(30);
+
+  // Vacío si no hay cota conocida; un fallo de Redis (o un valor ilegible) equivale a no conocerla
+  public Mono<Long> get(String cardId) {
+    return redis.opsForValue().get(key(cardId))
+        .map(Long::valueOf)
+        .onErrorResume(ex -> {
+          log.warn("[FUNDS] No se pudo leer la cota de {}: {}", cardId, ex.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  public Mono<Void> remember(String cardId, long upperBoundMinor) {
+    return redis.opsForValue().set(key(cardId), Long.toString(upperBoundMinor), ttl)
+        .then()
+        .onErrorResume(ex -> {
+          log.warn("[FUNDS] No se pudo guardar la cota de {}: {}", cardId, ex.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  // Si falla, la cota obsoleta caduca sola con el TTL
+  public Mono<Void> evict(String cardId) {
+    return redis.delete(key(cardId))
+        .then()
+        .onErrorResume(ex -> {
+          log.warn("[FUNDS] No se pudo invalidar la cota de {}: {}", cardId, ex.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  private static String key(String cardId) {
+    return FUNDS_UPPER_BOUND + ":" + cardId;
+  }
+}
@@ -24,6 +24,7 @@ public class MovementQueryService {
     private final CardsCacheService cache;
 
 
+    // Se carga siempre la ventana completa de la tarjeta; la caché sirve los primeros 'limit'
  public Flux<CardMovement> lastMovements(String cardId, int limit) {
         return cache.movements(cardId, limit, () ->
             repo.findById(cardId).flatMapMany(card -> {
@@ -32,12 +33,12 @@ public class MovementQueryService {
                     return Flux.fromIterable(products)
                             .flatMap(tx::findByProduct)
                             .sort(Comparator.comparing(TxGet::getCreatedDate, Comparator.nullsLast(Comparator.naturalOrder())).reversed())
-                            .take(limit)
+                            .take(CardsCacheService.MOVEMENTS_WINDOW)
                             .map(this::mapMovementFromSender);
                 } else {
                     return tx.findByProduct(card.getCreditId())
                             .sort(Comparator.comparing(TxGet::getCreatedDate, Comparator.nullsLast(Comparator.naturalOrder())).reversed())
-                            .take(limit)
+                            .take(CardsCacheService.MOVEMENTS_WINDOW)
                             .map(this::mapMovementFromReceiver);
                 }
             })
@@ -1,7 +1,6 @@
 package com.nttdata.cards_service.service;
 
 import com.nttdata.cards_service.integration.credits.dto.*;
-import com.nttdata.cards_service.integration.transactions.*;
 import com.nttdata.cards_service.integration.transactions.dto.*;
 import com.nttdata.cards_service.model.value.*;
 import lombok.*;
@@ -16,7 +15,7 @@ import java.util.*;
 public class PayCreditService {
   private final DebitOrchestratorService debit;
   private final com.nttdata.cards_service.integration.credits.CreditClient credits;
-  private final TransactionsClient tx;
+  private final TransactionOutbox outbox;
   private final CardRepository cardRepo;
 
   public Mono<StoredOperation> pay(String cardId, String opId, String creditId, double amount, String note) {
@@ -39,7 +38,8 @@ public class PayCreditService {
                     post.setType("payment");
                     post.setAmount(amount);
                     post.setReceiver(TxProduct.of(creditId, "personal_credit")); // o business_credit/credit_card según sea
-                    return tx.create(post).thenReturn(stored);
+                    // clave determinista (distinta de la #tx del débito): un reintento no duplica el pago
+                    return outbox.enqueue(cardId, cardId + ":" + opId + "#pay", List.of(post)).thenReturn(stored);
                   }))
                   // 3) Compensación si falla Credits: depositamos de vuelta cada slice y registramos reversa
                   .onErrorResume(ex -> debit.compensate(card, opId, stored.getResult().getSlices(), "payment")
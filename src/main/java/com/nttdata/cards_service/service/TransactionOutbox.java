@@ -0,0 +1,186 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.cache.*;
+import com.nttdata.cards_service.integration.transactions.*;
+import com.nttdata.cards_service.integration.transactions.dto.*;
+import com.nttdata.cards_service.model.entity.*;
+import com.nttdata.cards_service.repository.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+import reactor.util.function.*;
+import reactor.util.retry.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.*;
+import static org.springframework.data.mongodb.core.query.Query.*;
+
+// Registro de transacciones (auditoría) desacoplado de la operación con tarjeta:
+// las operaciones encolan TxPost en Mongo y un drenador en segundo plano los envía a Transactions.
+// Al entregarse, los movimientos en caché de la tarjeta dejan de ser actuales y se dan de baja.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionOutbox {
+
+  private final TxOutboxRepository repo;
+  private final ReactiveMongoTemplate mongo;
+  private final TransactionsClient tx;
+  private final CardsCacheService cache;
+
+  @Value("${cards.tx-outbox.batch-size:50}")
+  private int batchSize = 50;
+  @Value("${cards.tx-outbox.concurrency:4}")
+  private int concurrency = 4;
+  @Value("${cards.tx-outbox.max-attempts:10}")
+  private int maxAttempts = 10;
+  // Tiempo que un nodo se reserva un registro mientras lo envía
+  @Value("${cards.tx-outbox.lease:PT30S}")
+  private Duration lease = Duration.ofSeconds(30);
+  @Value("${cards.tx-outbox.retry-backoff:PT1S}")
+  private Duration retryBackoff = Duration.ofSeconds(1);
+  @Value("${cards.tx-outbox.max-retry-backoff:PT5M}")
+  private Duration maxRetryBackoff = Duration.ofMinutes(5);
+  // Reintentos del marcado SENT de una transacción ya entregada
+  @Value("${cards.tx-outbox.mark-sent-retries:3}")
+  private int markSentRetries = 3;
+
+  private static final Duration MARK_SENT_BACKOFF = Duration.ofMillis(200);
+
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
+  // Encolado idempotente: ids deterministas (key#i), así que volver a encolar lo mismo (recuperación de
+  // una saga o compensación) solo añade los registros que falten. Los entregados se conservan en SENT
+  // hasta su TTL precisamente para que un reencolado no los vuelva a enviar.
+  public Mono<Void> enqueue(String cardId, String key, List<TxPost> posts) {
+    if (posts.isEmpty()) return Mono.empty();
+    List<TxOutboxRecord> records = records(cardId, key, posts);
+    return repo.insert(records).then()
+        .onErrorResume(DuplicateKeyException.class, ex -> Flux.fromIterable(records)
+            .concatMap(r -> repo.insert(r).onErrorResume(DuplicateKeyException.class, dup -> Mono.empty()))
+            .then());
+  }
+
+  private static List<TxOutboxRecord> records(String cardId, String key, List<TxPost> posts) {
+    OffsetDateTime now = OffsetDateTime.now();
+    List<TxOutboxRecord> records = new ArrayList<>(posts.size());
+    for (int i = 0; i < posts.size(); i++) {
+      TxOutboxRecord r = new TxOutboxRecord();
+      r.setId(key + "#" + i);
+      r.setCardId(cardId);
+      r.setPost(posts.get(i));
+      r.setCreatedAt(now);
+      r.setNextAttemptAt(now);
+      records.add(r);
+    }
+    return records;
+  }
+
+  @Scheduled(fixedDelayString = "${cards.tx-outbox.drain-interval:PT1S}")
+  public void scheduledDrain() {
+    if (!draining.compareAndSet(false, true)) return;
+    drain()
+        .doFinally(s -> draining.set(false))
+        .subscribe(n -> {
+          if (n > 0) log.debug("[OUTBOX] {} transacciones enviadas", n);
+        }, e -> log.warn("[OUTBOX] Error drenando outbox: {}", e.getMessage()));
+  }
+
+  // Envía los registros vencidos por lotes y sigue mientras los lotes lleguen llenos, así el ritmo no queda
+  // limitado a un lote por intervalo; devuelve cuántos se entregaron
+  public Mono<Long> drain() {
+    int page = Math.max(1, batchSize);
+    return drainBatch(page)
+        .expand(b -> b.getT1() == page ? drainBatch(page) : Mono.empty())
+        .reduce(0L, (n, b) -> n + b.getT2());
+  }
+
+  // Un lote: (registros vencidos leídos, registros entregados). Los que no se entregan salen igualmente
+  // de los vencidos (lease de otro nodo o reprogramados), así que el siguiente lote no los repite
+  private Mono<Tuple2<Integer, Long>> drainBatch(int page) {
+    OffsetDateTime now = OffsetDateTime.now();
+    return repo.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+            TxOutboxRecord.PENDING, now, PageRequest.of(0, page))
+        .collectList()
+        .flatMap(due -> Flux.fromIterable(due)
+            .flatMap(r -> claim(r, now)
+                .flatMap(claimed -> claimed ? deliver(r) : Mono.just(false))
+                .filter(Boolean::booleanValue)
+                .map(ok -> r), Math.max(1, concurrency))
+            .collectList()
+            .flatMap(delivered -> evictMovements(delivered).thenReturn(Tuples.of(due.size(), (long) delivered.size()))));
+  }
+
+  // Una baja por tarjeta aunque el lote traiga varias transacciones suyas
+  private Mono<Void> evictMovements(List<TxOutboxRecord> delivered) {
+    return Flux.fromIterable(delivered)
+        .map(TxOutboxRecord::getCardId)
+        .filter(Objects::nonNull)
+        .distinct()
+        .flatMap(cache::evictMovements)
+        .then();
+  }
+
+  // Solo un nodo gana el registro: mueve nextAttemptAt al fin del lease si sigue vencido
+  private Mono<Boolean> claim(TxOutboxRecord r, OffsetDateTime now) {
+    Query q = query(where("_id").is(r.getId())
+        .and("status").is(TxOutboxRecord.PENDING)
+        .and("nextAttemptAt").lte(now));
+    return mongo.updateFirst(q, Update.update("nextAttemptAt", now.plus(lease)), TxOutboxRecord.class)
+        .map(res -> res.getModifiedCount() == 1);
+  }
+
+  // Solo un fallo de tx.create reprograma el registro. Si falla el marcado SENT la transacción ya existe
+  // en Transactions: reprogramarlo la volvería a enviar enseguida, así que se reintenta solo el marcado
+  private Mono<Boolean> deliver(TxOutboxRecord r) {
+    return tx.create(r.getPost())
+        .thenReturn(true)
+        .onErrorResume(ex -> reschedule(r, ex).thenReturn(false))
+        .flatMap(posted -> posted ? markSent(r) : Mono.just(false));
+  }
+
+  // Si aun así no se puede marcar, el registro queda PENDING hasta que venza el lease del claim (sin
+  // sumar intentos ni adelantar el reenvío); cuenta como entregado porque la transacción ya se creó
+  private Mono<Boolean> markSent(TxOutboxRecord r) {
+    return Mono.defer(() -> sent(r))
+        .retryWhen(Retry.backoff(Math.max(0, markSentRetries), MARK_SENT_BACKOFF))
+        .thenReturn(true)
+        .onErrorResume(ex -> {
+          log.warn("[OUTBOX] Transacción {} entregada pero sin marcar como enviada: {}", r.getId(), ex.getMessage());
+          return Mono.just(true);
+        });
+  }
+
+  private Mono<Void> sent(TxOutboxRecord r) {
+    OffsetDateTime now = OffsetDateTime.now();
+    return mongo.updateFirst(query(where("_id").is(r.getId())),
+        Update.update("status", TxOutboxRecord.SENT).set("sentAt", now), TxOutboxRecord.class).then();
+  }
+
+  private Mono<TxOutboxRecord> reschedule(TxOutboxRecord r, Throwable ex) {
+    r.setAttempts(r.getAttempts() + 1);
+    r.setLastError(ex.getMessage());
+    if (r.getAttempts() >= maxAttempts) {
+      r.setStatus(TxOutboxRecord.FAILED);
+      log.warn("[OUTBOX] Transacción {} descartada tras {} intentos: {}", r.getId(), r.getAttempts(), ex.getMessage());
+    } else {
+      r.setNextAttemptAt(OffsetDateTime.now().plus(backoff(r.getAttempts())));
+    }
+    return repo.save(r);
+  }
+
+  private Duration backoff(int attempts) {
+    Duration d = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+    return d.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : d;
+  }
+}
@@ -32,6 +32,7 @@ public class CardServiceImpl implements CardService {
   private final PrimaryBalanceService primaryBalance;
   private final CardMapper mapper;
   private final CardsCacheService cache;
+  private final FundsUpperBoundCache fundsBound;
   private final com.nttdata.cards_service.integration.accounts.AccountsClient accountsClient;
 
   @Override
@@ -56,7 +57,8 @@ public class CardServiceImpl implements CardService {
                   entity.setAccounts(normalizeAccounts(entity.getPrimaryAccountId(), entity.getAccounts()));
                   if (entity.getCreationDate() == null) entity.setCreationDate(OffsetDateTime.now());
                   entity.setUpdatedDate(OffsetDateTime.now());
-                  return repo.save(entity).map(mapper::toResponse);
+                  return repo.save(entity).map(mapper::toResponse)
+                      .flatMap(res -> cache.putCard(res).thenReturn(res));
                 });
           }
 
@@ -66,7 +68,8 @@ public class CardServiceImpl implements CardService {
 
           if (entity.getCreationDate() == null) entity.setCreationDate(OffsetDateTime.now());
           entity.setUpdatedDate(OffsetDateTime.now());
-          return repo.save(entity).map(mapper::toResponse);
+          return repo.save(entity).map(mapper::toResponse)
+              .flatMap(res -> cache.putCard(res).thenReturn(res));
         });
   }
 
@@ -86,6 +89,11 @@ public class CardServiceImpl implements CardService {
             .map(mapper::toResponse));
   }
 
+  @Override
+  public Flux<CardResponse> getCardsByIds(Collection<String> ids) {
+    return cache.cardsByIds(ids, missing -> repo.findAllById(missing).map(mapper::toResponse));
+  }
+
   @Override
   public Mono<CardResponse> updateCard(String id, CardRequest request) {
     return repo.findById(id)
@@ -106,13 +114,23 @@ public class CardServiceImpl implements CardService {
                 });
           }
           return repo.save(upd).map(mapper::toResponse);
-        });
+        })
+        .flatMap(res -> writeThrough(id, res));
   }
 
 
   @Override
   public Mono<Void> deleteCard(String id) {
-    return repo.deleteById(id);
+    return repo.deleteById(id)
+        .then(Mono.defer(() -> Mono.when(cache.evictCard(id), cache.evictPrimaryBalance(id),
+            cache.evictMovements(id), fundsBound.evict(id))));
+  }
+
+  // Tras guardar: la tarjeta se reescribe en caché y se da de baja lo que depende de sus cuentas
+  // (saldo principal, movimientos y cota de fondos)
+  private Mono<CardResponse> writeThrough(String id, CardResponse res) {
+    return Mono.when(cache.putCard(res), cache.evictPrimaryBalance(id), cache.evictMovements(id), fundsBound.evict(id))
+        .thenReturn(res);
   }
 
   @Override
@@ -126,14 +144,13 @@ public class CardServiceImpl implements CardService {
         return Mono.error(new IllegalStateException("primaryAccountId must be included"));
 
       // validar que TODAS existen y están activas (si el dato viene)
-      return Flux.fromIterable(accountsList)
-          .flatMap(accountsClient::getAccount)
-          .collectList()
+      return accountsClient.getAccounts(accountsList)
           .flatMap(__ -> {
             c.setPrimaryAccountId(body.getPrimaryAccountId());
             c.setAccounts(normalizeAccounts(body.getPrimaryAccountId(), accountsList));
             c.setUpdatedDate(OffsetDateTime.now());
-            return repo.save(c).map(mapper::toResponse);
+            return repo.save(c).map(mapper::toResponse)
+                .flatMap(res -> writeThrough(id, res));
           });
     });
   }
@@ -151,7 +168,8 @@ public class CardServiceImpl implements CardService {
               c.getAccounts().add(body.getAccountId());
             c.setAccounts(normalizeAccounts(c.getPrimaryAccountId(), c.getAccounts()));
             c.setUpdatedDate(OffsetDateTime.now());
-            return repo.save(c).map(mapper::toResponse);
+            return repo.save(c).map(mapper::toResponse)
+                .flatMap(res -> writeThrough(id, res));
           });
     });
   }
@@ -164,7 +182,8 @@ public class CardServiceImpl implements CardService {
         return Mono.error(new IllegalStateException("Cannot remove primary account"));
       c.getAccounts().removeIf(a -> a.equals(accountId));
       c.setUpdatedDate(OffsetDateTime.now());
-      return repo.save(c).map(mapper::toResponse);
+      return repo.save(c).map(mapper::toResponse)
+          .flatMap(res -> writeThrough(id, res));
     });
   }
 
@@ -179,7 +198,8 @@ public class CardServiceImpl implements CardService {
         return Mono.error(new IllegalStateException("primary account must be included"));
       c.setAccounts(normalizeAccounts(c.getPrimaryAccountId(), ids));
       c.setUpdatedDate(OffsetDateTime.now());
-      return repo.save(c).map(mapper::toResponse);
+      return repo.save(c).map(mapper::toResponse)
+          .flatMap(res -> writeThrough(id, res));
     });
   }
 
@@ -197,7 +217,8 @@ public class CardServiceImpl implements CardService {
             c.setPrimaryAccountId(body.getAccountId());
             c.setAccounts(normalizeAccounts(body.getAccountId(), c.getAccounts()));
             c.setUpdatedDate(OffsetDateTime.now());
-            return repo.save(c).map(mapper::toResponse);
+            return repo.save(c).map(mapper::toResponse)
+                .flatMap(res -> writeThrough(id, res));
           });
     });
   }
@@ -264,7 +285,9 @@ public class CardServiceImpl implements CardService {
           opReq.setMetadata(metadata);
 
           return accountsClient.applyBalanceOperation(primaryAccountId, opReq)
-              .map(resp -> buildDepositResponse(primaryAccountId, request, resp));
+              .map(resp -> buildDepositResponse(primaryAccountId, request, resp))
+              .flatMap(res -> Mono.when(fundsBound.evict(cardId), cache.evictPrimaryBalance(cardId),
+                  cache.evictMovements(cardId)).thenReturn(res));
         });
 
   }
@@ -291,7 +314,7 @@ public class CardServiceImpl implements CardService {
 
   @Override
   public Flux<CardMovement> lastMovements(String id, Integer limit) {
-    int n = (limit == null || limit < 1) ? 10 : Math.min(limit, 100);
+    int n = (limit == null || limit < 1) ? 10 : Math.min(limit, CardsCacheService.MOVEMENTS_WINDOW);
     return movements.lastMovements(id, n);
   }
 
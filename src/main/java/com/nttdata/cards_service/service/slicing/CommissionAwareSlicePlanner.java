@@ -0,0 +1,47 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.service.CardDomainUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// Vacía primero las cuentas con menor comisión esperada; empates en orden de asociación
+@Component
+@RequiredArgsConstructor
+public class CommissionAwareSlicePlanner implements SlicePlanner {
+
+    public static final String NAME = "commission-aware";
+
+    private final SliceCommissionStats stats;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<CardOperationResponseSlices> plan(long amountMinor, String[] accountIds, long[] balancesMinor) {
+        String[] ids = accountIds.clone();
+        long[] sorted = balancesMinor.clone();
+        double[] rates = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) rates[i] = stats.rate(ids[i]);
+        // inserción estable por comisión ascendente: una tarjeta tiene pocas cuentas
+        for (int i = 1; i < ids.length; i++) {
+            String id = ids[i];
+            long balance = sorted[i];
+            double rate = rates[i];
+            int j = i - 1;
+            for (; j >= 0 && rates[j] > rate; j--) {
+                ids[j + 1] = ids[j];
+                sorted[j + 1] = sorted[j];
+                rates[j + 1] = rates[j];
+            }
+            ids[j + 1] = id;
+            sorted[j + 1] = balance;
+            rates[j + 1] = rate;
+        }
+        return CardDomainUtils.planSlices(amountMinor, ids, sorted);
+    }
+}
@@ -0,0 +1,29 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.service.CardDomainUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Vacía las cuentas en orden de asociación, empezando por la principal (comportamiento histórico)
+@Component
+public class GreedySlicePlanner implements SlicePlanner {
+
+    public static final String NAME = "greedy";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean needsAllBalances() {
+        return false;
+    }
+
+    @Override
+    public List<CardOperationResponseSlices> plan(long amountMinor, String[] accountIds, long[] balancesMinor) {
+        return CardDomainUtils.planSlices(amountMinor, accountIds, balancesMinor);
+    }
+}
@@ -0,0 +1,39 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.service.CardDomainUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// Menor número de cuentas que cubre el importe: tomar primero los saldos mayores es óptimo
+// (para cualquier k, los k saldos mayores son los que más suman). Empates: orden de asociación.
+@Component
+public class MinSliceCountPlanner implements SlicePlanner {
+
+    public static final String NAME = "min-slices";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<CardOperationResponseSlices> plan(long amountMinor, String[] accountIds, long[] balancesMinor) {
+        String[] ids = accountIds.clone();
+        long[] sorted = balancesMinor.clone();
+        // inserción estable por saldo descendente: una tarjeta tiene pocas cuentas
+        for (int i = 1; i < ids.length; i++) {
+            String id = ids[i];
+            long balance = sorted[i];
+            int j = i - 1;
+            for (; j >= 0 && sorted[j] < balance; j--) {
+                ids[j + 1] = ids[j];
+                sorted[j + 1] = sorted[j];
+            }
+            ids[j + 1] = id;
+            sorted[j + 1] = balance;
+        }
+        return CardDomainUtils.planSlices(amountMinor, ids, sorted);
+    }
+}
@@ -0,0 +1,29 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Comisión esperada por cuenta (comisión / importe), aprendida de los slices ya aplicados.
+// Accounts no expone la tarifa, así que se usa la última tasa observada en este nodo.
+@Component
+public class SliceCommissionStats {
+
+    private final ConcurrentMap<String, Double> rates = new ConcurrentHashMap<>();
+
+    public void observe(List<CardOperationResponseSlices> applied) {
+        for (CardOperationResponseSlices s : applied) {
+            if (s.getAmount() == null || s.getAmount() <= 0) continue;
+            double commission = s.getCommissionApplied() == null ? 0.0 : s.getCommissionApplied();
+            rates.put(s.getAccountId(), commission / s.getAmount());
+        }
+    }
+
+    // Sin observaciones se asume sin comisión
+    public double rate(String accountId) {
+        return rates.getOrDefault(accountId, 0.0);
+    }
+}
@@ -0,0 +1,21 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+
+import java.util.List;
+
+// Estrategia de reparto de un débito entre las cuentas asociadas a la tarjeta.
+// accountIds/balancesMinor vienen en orden de asociación (principal primero), mismo índice en ambos arrays;
+// importes en céntimos.
+public interface SlicePlanner {
+
+    String name();
+
+    // true si necesita el saldo de todas las cuentas; false si le basta con las primeras que cubren el importe
+    default boolean needsAllBalances() {
+        return true;
+    }
+
+    // Lanza IllegalStateException si las cuentas no alcanzan
+    List<CardOperationResponseSlices> plan(long amountMinor, String[] accountIds, long[] balancesMinor);
+}
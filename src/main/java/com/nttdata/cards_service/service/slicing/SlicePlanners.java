@@ -0,0 +1,46 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.model.entity.Card;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Elige la estrategia de reparto: metadata.slicePlanner de la tarjeta o, si no, cards.slicing.strategy
+@Component
+@Slf4j
+public class SlicePlanners {
+
+    public static final String CARD_METADATA_KEY = "slicePlanner";
+
+    private final Map<String, SlicePlanner> byName;
+    private final SliceCommissionStats commissionStats;
+
+    @Value("${cards.slicing.strategy:" + GreedySlicePlanner.NAME + "}")
+    private String defaultStrategy = GreedySlicePlanner.NAME;
+
+    public SlicePlanners(List<SlicePlanner> planners, SliceCommissionStats commissionStats) {
+        this.byName = planners.stream().collect(Collectors.toMap(SlicePlanner::name, Function.identity()));
+        this.commissionStats = commissionStats;
+    }
+
+    public SlicePlanner forCard(Card card) {
+        Object perCard = card.getMetadata() == null ? null : card.getMetadata().get(CARD_METADATA_KEY);
+        String name = perCard == null ? defaultStrategy : perCard.toString();
+        SlicePlanner planner = byName.get(name);
+        if (planner != null) return planner;
+
+        log.warn("[SLICING] Estrategia desconocida '{}' en tarjeta {}; se usa {}", name, card.getId(), defaultStrategy);
+        return byName.getOrDefault(defaultStrategy, byName.get(GreedySlicePlanner.NAME));
+    }
+
+    // Alimenta la comisión esperada por cuenta con el resultado de un débito aplicado
+    public void observe(List<CardOperationResponseSlices> applied) {
+        commissionStats.observe(applied);
+    }
+}
@@ -0,0 +1,90 @@
+package com.nttdata.cards_service.cache;
+
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.dataformat.cbor.*;
+import com.fasterxml.jackson.dataformat.smile.*;
+import com.fasterxml.jackson.datatype.jsr310.*;
+import com.nttdata.cards_service.model.*;
+import org.junit.jupiter.api.*;
+import org.openapitools.jackson.nullable.*;
+import org.springframework.data.redis.serializer.*;
+import org.springframework.http.converter.json.*;
+
+import java.nio.charset.*;
+import java.time.*;
+import java.util.stream.*;
+
+import static com.nttdata.cards_service.cache.CacheCodec.Format.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCodecTest {
+
+  private static ObjectMapper mapper(com.fasterxml.jackson.core.JsonFactory factory) {
+    return Jackson2ObjectMapperBuilder.json()
+        .factory(factory)
+        .modules(new JavaTimeModule(), new JsonNullableModule())
+        .featuresToDisable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .timeZone("UTC")
+        .build();
+  }
+
+  private static CacheCodec codec(CacheCodec.Format format, boolean lz4, int threshold) {
+    ObjectMapper json = mapper(new com.fasterxml.jackson.core.JsonFactory())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    return new CacheCodec(json, mapper(new SmileFactory()), mapper(new CBORFactory()), format, lz4, threshold);
+  }
+
+  private static CardMovement[] movements(int n) {
+    return IntStream.range(0, n).mapToObj(i -> new CardMovement()
+            .id("TX-" + i)
+            .amount(10.0 + i)
+            .type(CardMovement.TypeEnum.PURCHASE)
+            .createdDate(OffsetDateTime.of(2025, 1, 1, 10, 0, i % 60, 0, ZoneOffset.UTC)))
+        .toArray(CardMovement[]::new);
+  }
+
+  @Test
+  void every_format_round_trips_with_and_without_lz4() {
+    CardMovement[] value = movements(50);
+    for (CacheCodec.Format format : CacheCodec.Format.values()) {
+      for (boolean lz4 : new boolean[]{false, true}) {
+        RedisSerializer<CardMovement[]> s = codec(format, lz4, 64).serializer(CardMovement[].class);
+        CardMovement[] back = s.deserialize(s.serialize(value));
+        assertArrayEquals(value, back, format + " lz4=" + lz4);
+      }
+    }
+  }
+
+  @Test
+  void plain_json_is_written_without_header_and_legacy_values_stay_readable() {
+    CardResponse card = new CardResponse().id("C1").customerId("CU1");
+    byte[] bytes = codec(JSON, false, 512).serializer(CardResponse.class).serialize(card);
+    assertEquals('{', bytes[0]);
+
+    byte[] legacy = "{\"id\":\"C1\",\"customerId\":\"CU1\"}".getBytes(StandardCharsets.UTF_8);
+    assertEquals(card, codec(SMILE, true, 0).serializer(CardResponse.class).deserialize(legacy));
+  }
+
+  @Test
+  void reader_accepts_values_written_in_another_format() {
+    CardMovement[] value = movements(20);
+    byte[] smileLz4 = codec(SMILE, true, 0).serializer(CardMovement[].class).serialize(value);
+    assertArrayEquals(value, codec(CBOR, false, 512).serializer(CardMovement[].class).deserialize(smileLz4));
+  }
+
+  @Test
+  void binary_and_compressed_values_are_smaller_than_json() {
+    CardMovement[] value = movements(100);
+    int json = codec(JSON, false, 512).serializer(CardMovement[].class).serialize(value).length;
+    int smile = codec(SMILE, false, 512).serializer(CardMovement[].class).serialize(value).length;
+    int smileLz4 = codec(SMILE, true, 512).serializer(CardMovement[].class).serialize(value).length;
+    assertTrue(smile < json, smile + " >= " + json);
+    assertTrue(smileLz4 < smile, smileLz4 + " >= " + smile);
+  }
+
+  @Test
+  void unknown_header_fails_as_serialization_error() {
+    RedisSerializer<CardResponse> s = codec(JSON, false, 512).serializer(CardResponse.class);
+    assertThrows(SerializationException.class, () -> s.deserialize(new byte[]{0x7F, 1, 2}));
+  }
+}
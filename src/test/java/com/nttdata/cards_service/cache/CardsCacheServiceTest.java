@@ -1,11 +1,13 @@
 package com.nttdata.cards_service.cache;
 
 import com.nttdata.cards_service.model.*;
+import io.micrometer.core.instrument.simple.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
 import org.mockito.*;
 import org.mockito.junit.jupiter.*;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.*;
 import org.springframework.test.util.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
@@ -15,6 +17,7 @@ import java.util.concurrent.atomic.*;
 import java.util.function.*;
 
 import static com.nttdata.cards_service.cache.CacheKeys.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -34,6 +37,13 @@ class CardsCacheServiceTest {
   ReactiveValueOperations<String, PrimaryAccountBalance> pbOps;
   @Mock
   ReactiveValueOperations<String, CardMovement[]> movOps;
+  @Mock
+  ReactiveStringRedisTemplate redis;
+  @Mock
+  ReactiveValueOperations<String, String> lockOps;
+  SimpleMeterRegistry meters;
+  // generación de las claves en Redis: la sube cada baja (script) y la leen los rellenos (MGET)
+  final AtomicLong generation = new AtomicLong();
   CardsCacheService service;
 
 
@@ -42,17 +52,35 @@ class CardsCacheServiceTest {
     lenient().when(cardRedis.opsForValue()).thenReturn(cardOps);
     lenient().when(pbRedis.opsForValue()).thenReturn(pbOps);
     lenient().when(movRedis.opsForValue()).thenReturn(movOps);
-    service = new CardsCacheService(cardRedis, pbRedis, movRedis);
+    lenient().when(redis.opsForValue()).thenReturn(lockOps);
+    lenient().when(lockOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+    lenient().when(redis.execute(anyScript(), anyList(), anyList())).thenAnswer(inv -> {
+      java.util.List<String> keys = inv.getArgument(1);
+      if (keys.get(0).startsWith(CACHE_GENERATION)) generation.incrementAndGet();
+      return Flux.just(1L);
+    });
+    lenient().when(lockOps.multiGet(anyList())).thenAnswer(inv -> {
+      long g = generation.get();
+      return Mono.just(java.util.Collections.nCopies(((java.util.List<?>) inv.getArgument(0)).size(),
+          g == 0 ? null : String.valueOf(g)));
+    });
+    meters = new SimpleMeterRegistry();
+    service = new CardsCacheService(cardRedis, pbRedis, movRedis, redis, meters, 100);
     ReflectionTestUtils.setField(service, "cardByIdTtl", Duration.ofMinutes(5));
     ReflectionTestUtils.setField(service, "primaryBalanceTtl", Duration.ofSeconds(30));
     ReflectionTestUtils.setField(service, "movementsTtl", Duration.ofSeconds(45));
   }
 
+  // Tipado para no arrastrar conversiones sin comprobar en los stubs de execute(script, keys, args)
+  private static RedisScript<Long> anyScript() {
+    return any();
+  }
+
   @Test
   void cardById_cacheMiss_thenStoresAndReturns() {
     String key = CARD_BY_ID + ":C1";
     when(cardOps.get(key)).thenReturn(Mono.empty());
-    when(cardOps.set(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+    when(cardOps.setIfAbsent(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
 
     AtomicInteger calls = new AtomicInteger(0);
     Supplier<Mono<CardResponse>> loader = () -> {
@@ -64,7 +92,7 @@ class CardsCacheServiceTest {
         .verifyComplete();
 
     verify(cardOps).get(key);
-    verify(cardOps).set(eq(key), any(CardResponse.class), eq(Duration.ofMinutes(5)));
+    verify(cardOps).setIfAbsent(eq(key), any(CardResponse.class), eq(Duration.ofMinutes(5)));
     org.junit.jupiter.api.Assertions.assertEquals(1, calls.get());
   }
 
@@ -78,6 +106,295 @@ class CardsCacheServiceTest {
         .verifyComplete();
 
     verify(pbOps).get(key);
-    verify(pbOps, never()).set(anyString(), any(), any());
+    verify(pbOps, never()).setIfAbsent(anyString(), any(), any());
+  }
+
+  @Test
+  void cardById_secondRead_servedFromL1_withoutRedis() {
+    String key = CARD_BY_ID + ":C1";
+    when(cardOps.get(key)).thenReturn(Mono.just(new CardResponse().id("C1")));
+
+    StepVerifier.create(service.cardById("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(service.cardById("C1", Mono::empty))
+        .expectNextMatches(cr -> "C1".equals(cr.getId()))
+        .verifyComplete();
+
+    verify(cardOps, times(1)).get(key);
+    assertEquals(1.0, meters.get("cards.cache.requests").tags("cache", "cardById", "tier", "l1", "result", "hit").counter().count());
+    assertEquals(1.0, meters.get("cards.cache.requests").tags("cache", "cardById", "tier", "l1", "result", "miss").counter().count());
+    assertEquals(1.0, meters.get("cards.cache.requests").tags("cache", "cardById", "tier", "l2", "result", "hit").counter().count());
+  }
+
+  @Test
+  void evictCard_deletesBothTiers_andPublishesInvalidation() {
+    String key = CARD_BY_ID + ":C1";
+    when(cardOps.get(key)).thenReturn(Mono.just(new CardResponse().id("C1")));
+    when(cardOps.delete(key)).thenReturn(Mono.just(true));
+    when(redis.convertAndSend(CACHE_INVALIDATION, key)).thenReturn(Mono.just(1L));
+
+    StepVerifier.create(service.cardById("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(service.evictCard("C1")).verifyComplete();
+    StepVerifier.create(service.cardById("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+
+    verify(redis).convertAndSend(CACHE_INVALIDATION, key);
+    // tras la baja la lectura vuelve a Redis
+    verify(cardOps, times(2)).get(key);
+  }
+
+  @Test
+  void invalidationMessage_fromOtherNode_dropsOnlyL1() {
+    when(pbOps.get(PRIMARY_BALANCE + ":C1")).thenReturn(Mono.just(new PrimaryAccountBalance().cardId("C1")));
+    when(movOps.get(MOVEMENTS + ":C1")).thenReturn(Mono.just(new CardMovement[]{new CardMovement().id("M1")}));
+
+    StepVerifier.create(service.primaryBalance("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(service.movements("C1", 10, Flux::empty)).expectNextCount(1).verifyComplete();
+
+    service.onInvalidation(PRIMARY_BALANCE + ":C1");
+    service.onInvalidation(MOVEMENTS + ":C1");
+
+    StepVerifier.create(service.primaryBalance("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(service.movements("C1", 10, Flux::empty)).expectNextCount(1).verifyComplete();
+    verify(pbOps, times(2)).get(PRIMARY_BALANCE + ":C1");
+    verify(movOps, times(2)).get(MOVEMENTS + ":C1");
+    verify(pbOps, never()).delete(anyString());
+  }
+
+  @Test
+  void concurrentMisses_shareOneLoad_andReleaseTheLock() {
+    String key = CARD_BY_ID + ":C1";
+    when(cardOps.get(key)).thenReturn(Mono.empty());
+    when(cardOps.setIfAbsent(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+
+    AtomicInteger calls = new AtomicInteger(0);
+    Supplier<Mono<CardResponse>> loader = () -> {
+      calls.incrementAndGet();
+      return Mono.delay(Duration.ofMillis(50)).thenReturn(new CardResponse().id("C1"));
+    };
+    StepVerifier.create(Mono.zip(service.cardById("C1", loader), service.cardById("C1", loader)))
+        .expectNextMatches(t -> t.getT1() == t.getT2())
+        .verifyComplete();
+
+    assertEquals(1, calls.get());
+    verify(lockOps).setIfAbsent(eq(LOAD_LOCK + ":" + key), anyString(), eq(Duration.ofSeconds(3)));
+    verify(redis).execute(anyScript(), eq(java.util.List.of(LOAD_LOCK + ":" + key)), anyList());
+    assertEquals(1.0, meters.get("cards.cache.loads").tags("cache", "cardById", "result", "coalesced").counter().count());
+    assertEquals(1.0, meters.get("cards.cache.loads").tags("cache", "cardById", "result", "loaded").counter().count());
+  }
+
+  @Test
+  void lockHeldByOtherNode_waitsForItsValue_insteadOfLoading() {
+    String key = PRIMARY_BALANCE + ":C1";
+    ReflectionTestUtils.setField(service, "loadLockPoll", Duration.ofMillis(5));
+    when(lockOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+    when(pbOps.get(key)).thenReturn(Mono.empty())
+        .thenReturn(Mono.empty())
+        .thenReturn(Mono.just(new PrimaryAccountBalance().cardId("C1")));
+
+    AtomicInteger calls = new AtomicInteger(0);
+    StepVerifier.create(service.primaryBalance("C1", () -> {
+          calls.incrementAndGet();
+          return Mono.empty();
+        }))
+        .expectNextMatches(pb -> "C1".equals(pb.getCardId()))
+        .verifyComplete();
+
+    assertEquals(0, calls.get());
+    verify(pbOps, never()).setIfAbsent(anyString(), any(), any());
+    assertEquals(1.0, meters.get("cards.cache.loads").tags("cache", "primaryBalance", "result", "peer").counter().count());
+  }
+
+  @Test
+  void lockHeldByOtherNode_loadsItself_whenNoValueAppears() {
+    String key = PRIMARY_BALANCE + ":C1";
+    ReflectionTestUtils.setField(service, "loadLockTtl", Duration.ofMillis(20));
+    ReflectionTestUtils.setField(service, "loadLockPoll", Duration.ofMillis(5));
+    when(lockOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+    when(pbOps.get(key)).thenReturn(Mono.empty());
+    when(pbOps.setIfAbsent(eq(key), any(PrimaryAccountBalance.class), any(Duration.class))).thenReturn(Mono.just(true));
+
+    StepVerifier.create(service.primaryBalance("C1", () -> Mono.just(new PrimaryAccountBalance().cardId("C1"))))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    verify(pbOps).setIfAbsent(eq(key), any(PrimaryAccountBalance.class), eq(Duration.ofSeconds(30)));
+    verify(redis, never()).execute(anyScript(), anyList(), anyList());
+  }
+
+  @Test
+  void movements_differentLimits_areSlicedFromOneCachedWindow() {
+    String key = MOVEMENTS + ":C1";
+    when(movOps.get(key)).thenReturn(Mono.empty());
+    when(movOps.setIfAbsent(eq(key), any(CardMovement[].class), any(Duration.class))).thenReturn(Mono.just(true));
+
+    AtomicInteger loads = new AtomicInteger(0);
+    Supplier<Flux<CardMovement>> window = () -> {
+      loads.incrementAndGet();
+      return Flux.range(1, 5).map(i -> new CardMovement().id("M" + i));
+    };
+
+    StepVerifier.create(service.movements("C1", 2, window).map(CardMovement::getId))
+        .expectNext("M1", "M2")
+        .verifyComplete();
+    StepVerifier.create(service.movements("C1", 10, window).map(CardMovement::getId))
+        .expectNext("M1", "M2", "M3", "M4", "M5")
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+    verify(movOps).setIfAbsent(eq(key), argThat(arr -> arr.length == 5), eq(Duration.ofSeconds(45)));
+  }
+
+  @Test
+  void cardsByIds_oneMget_oneLoadForMisses_andWritesThemBack() {
+    String k1 = CARD_BY_ID + ":C1";
+    String k2 = CARD_BY_ID + ":C2";
+    String k3 = CARD_BY_ID + ":C3";
+    // C1 ya en L1
+    when(cardOps.get(k1)).thenReturn(Mono.just(new CardResponse().id("C1")));
+    StepVerifier.create(service.cardById("C1", Mono::empty)).expectNextCount(1).verifyComplete();
+
+    // MGET solo con lo que falta en L1, en el orden pedido
+    when(cardOps.multiGet(java.util.List.of(k3, k2)))
+        .thenReturn(Mono.just(java.util.Arrays.asList(null, new CardResponse().id("C2"))));
+    when(cardOps.setIfAbsent(eq(k3), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+
+    AtomicInteger loads = new AtomicInteger(0);
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C3", "C1", "C2", "C1"), missing -> {
+          loads.incrementAndGet();
+          assertEquals(java.util.List.of("C3"), missing);
+          return Flux.just(new CardResponse().id("C3"));
+        }).map(CardResponse::getId))
+        .expectNext("C3", "C1", "C2")
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+    verify(cardOps, times(1)).multiGet(anyList());
+    verify(cardOps).setIfAbsent(eq(k3), any(CardResponse.class), eq(Duration.ofMinutes(5)));
+    // lo cargado queda en L1: la siguiente lectura no va a Redis
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C2", "C3"), missing -> Flux.empty()))
+        .expectNextCount(2)
+        .verifyComplete();
+    verify(cardOps, times(1)).multiGet(anyList());
+  }
+
+  @Test
+  void load_racingAnEvict_dropsItsFill_fromBothTiers() {
+    String key = CARD_BY_ID + ":C1";
+    when(cardOps.get(key)).thenReturn(Mono.empty());
+    when(cardOps.setIfAbsent(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+    when(cardOps.delete(key)).thenReturn(Mono.just(true));
+    when(redis.convertAndSend(CACHE_INVALIDATION, key)).thenReturn(Mono.just(1L));
+
+    // la tarjeta cambia y se da de baja mientras el cargador aún devuelve la versión anterior
+    Supplier<Mono<CardResponse>> loader = () -> service.evictCard("C1")
+        .then(Mono.just(new CardResponse().id("C1").cardNumber("old")));
+    StepVerifier.create(service.cardById("C1", loader))
+        .expectNextMatches(cr -> "old".equals(cr.getCardNumber()))
+        .verifyComplete();
+
+    // una baja de la propia evict y otra del relleno, que vio cambiar la generación
+    verify(cardOps, times(2)).delete(key);
+    // no quedó en L1: la siguiente lectura vuelve a Redis
+    StepVerifier.create(service.cardById("C1", () -> Mono.just(new CardResponse().id("C1").cardNumber("new"))))
+        .expectNextMatches(cr -> "new".equals(cr.getCardNumber()))
+        .verifyComplete();
+    verify(cardOps, times(2)).get(key);
+  }
+
+  @Test
+  void load_racingAWriteThrough_keepsTheWrittenValue() {
+    String key = CARD_BY_ID + ":C1";
+    when(cardOps.get(key)).thenReturn(Mono.empty());
+    when(cardOps.set(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+    // el put ya escribió la clave: el SET NX del relleno no la pisa
+    when(cardOps.setIfAbsent(eq(key), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(false));
+    when(redis.convertAndSend(CACHE_INVALIDATION, key)).thenReturn(Mono.just(1L));
+
+    Supplier<Mono<CardResponse>> loader = () -> service.putCard(new CardResponse().id("C1").cardNumber("new"))
+        .then(Mono.just(new CardResponse().id("C1").cardNumber("old")));
+    StepVerifier.create(service.cardById("C1", loader)).expectNextCount(1).verifyComplete();
+
+    verify(cardOps).setIfAbsent(eq(key), argThat(cr -> "old".equals(cr.getCardNumber())), any(Duration.class));
+    verify(cardOps, never()).delete(anyString());
+    // L1 conserva lo escrito por el put, no lo cargado
+    StepVerifier.create(service.cardById("C1", Mono::empty))
+        .expectNextMatches(cr -> "new".equals(cr.getCardNumber()))
+        .verifyComplete();
+    verify(cardOps, times(1)).get(key);
+  }
+
+  @Test
+  void cardsByIds_racingAnEvict_dropsOnlyTheEvictedFill() {
+    String k1 = CARD_BY_ID + ":C1";
+    String k2 = CARD_BY_ID + ":C2";
+    when(cardOps.multiGet(java.util.List.of(k1, k2))).thenReturn(Mono.just(java.util.Arrays.asList(null, null)));
+    when(cardOps.setIfAbsent(anyString(), any(CardResponse.class), any(Duration.class))).thenReturn(Mono.just(true));
+    when(cardOps.delete(anyString())).thenReturn(Mono.just(true));
+    when(redis.convertAndSend(eq(CACHE_INVALIDATION), anyString())).thenReturn(Mono.just(1L));
+    // generación por clave: solo C1 cambia durante la carga
+    java.util.Map<String, String> gens = new java.util.concurrent.ConcurrentHashMap<>();
+    doAnswer(inv -> {
+      java.util.List<String> keys = inv.getArgument(1);
+      gens.merge(keys.get(0), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1));
+      return Flux.just(1L);
+    }).when(redis).execute(anyScript(), anyList(), anyList());
+    doAnswer(inv -> {
+      java.util.List<String> out = new java.util.ArrayList<>();
+      for (Object k : (java.util.List<?>) inv.getArgument(0)) out.add(gens.get(k));
+      return Mono.just(out);
+    }).when(lockOps).multiGet(anyList());
+
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C1", "C2"), missing -> service.evictCard("C1")
+            .thenMany(Flux.just(new CardResponse().id("C1"), new CardResponse().id("C2")))))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    verify(cardOps, times(2)).delete(k1);
+    verify(cardOps, never()).delete(k2);
+    // C2 quedó en L1; C1 vuelve a Redis
+    when(cardOps.multiGet(java.util.List.of(k1))).thenReturn(Mono.just(java.util.List.of(new CardResponse().id("C1"))));
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C1", "C2"), missing -> Flux.empty()))
+        .expectNextCount(2)
+        .verifyComplete();
+    verify(cardOps).multiGet(java.util.List.of(k1));
+  }
+
+  @Test
+  void lateL2Read_afterAnInvalidation_doesNotRepopulateL1() {
+    String key = CARD_BY_ID + ":C1";
+    // la invalidación de otro nodo se procesa mientras el GET a L2 aún trae la versión anterior
+    when(cardOps.get(key))
+        .thenReturn(Mono.fromRunnable(() -> service.onInvalidation(key))
+            .then(Mono.just(new CardResponse().id("C1").cardNumber("old"))))
+        .thenReturn(Mono.just(new CardResponse().id("C1").cardNumber("new")));
+
+    StepVerifier.create(service.cardById("C1", Mono::empty))
+        .expectNextMatches(cr -> "old".equals(cr.getCardNumber()))
+        .verifyComplete();
+
+    // no quedó en L1: la siguiente lectura vuelve a Redis y ve el valor nuevo
+    StepVerifier.create(service.cardById("C1", Mono::empty))
+        .expectNextMatches(cr -> "new".equals(cr.getCardNumber()))
+        .verifyComplete();
+    verify(cardOps, times(2)).get(key);
+  }
+
+  @Test
+  void lateMget_afterAnInvalidation_doesNotRepopulateL1() {
+    String k1 = CARD_BY_ID + ":C1";
+    String k2 = CARD_BY_ID + ":C2";
+    when(cardOps.multiGet(java.util.List.of(k1, k2)))
+        .thenReturn(Mono.fromRunnable(() -> service.onInvalidation(k1))
+            .then(Mono.just(java.util.List.of(new CardResponse().id("C1"), new CardResponse().id("C2")))));
+
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C1", "C2"), missing -> Flux.empty()))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    // C2 quedó en L1; C1 vuelve a Redis
+    when(cardOps.multiGet(java.util.List.of(k1))).thenReturn(Mono.just(java.util.List.of(new CardResponse().id("C1"))));
+    StepVerifier.create(service.cardsByIds(java.util.List.of("C1", "C2"), missing -> Flux.empty()))
+        .expectNextCount(2)
+        .verifyComplete();
+    verify(cardOps).multiGet(java.util.List.of(k1));
   }
 }
@@ -0,0 +1,58 @@
+package com.nttdata.cards_service.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+  @Test
+  void concurrent_calls_with_same_key_share_one_execution() {
+    SingleFlight<String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger coalesced = new AtomicInteger();
+
+    Mono<String> call = flight.execute("K", () -> Mono.fromCallable(() -> "v" + calls.incrementAndGet())
+        .delayElement(Duration.ofMillis(50)), coalesced::incrementAndGet);
+
+    StepVerifier.create(Flux.merge(call, call, call))
+        .expectNext("v1", "v1", "v1")
+        .verifyComplete();
+    assertEquals(1, calls.get());
+    assertEquals(2, coalesced.get());
+    assertEquals(0, flight.inFlight());
+  }
+
+  @Test
+  void key_is_released_after_error_so_next_call_runs_again() {
+    SingleFlight<String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    Mono<String> call = flight.execute("K", () -> calls.incrementAndGet() == 1
+        ? Mono.error(new IllegalStateException("boom"))
+        : Mono.just("ok"), () -> { });
+
+    StepVerifier.create(call).expectError(IllegalStateException.class).verify();
+    StepVerifier.create(call).expectNext("ok").verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void different_keys_do_not_share() {
+    SingleFlight<String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    StepVerifier.create(Flux.merge(
+            flight.execute("A", () -> Mono.just("a").doOnNext(v -> calls.incrementAndGet()), () -> { }),
+            flight.execute("B", () -> Mono.just("b").doOnNext(v -> calls.incrementAndGet()), () -> { })))
+        .expectNextCount(2)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+}
@@ -0,0 +1,79 @@
+package com.nttdata.cards_service.config;
+
+import com.nttdata.cards_service.model.entity.*;
+import org.junit.jupiter.api.*;
+import org.springframework.context.support.*;
+import org.springframework.core.env.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.index.*;
+import org.springframework.data.mongodb.core.mapping.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MongoIndexesConfigTest {
+
+  private ReactiveMongoTemplate mongo;
+  private Map<Class<?>, List<org.bson.Document>> ensured;
+  private MongoIndexesConfig config;
+
+  @BeforeEach
+  void init() {
+    StaticApplicationContext ctx = new StaticApplicationContext();
+    ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of()));
+    ctx.refresh();
+    MongoMappingContext mapping = new MongoMappingContext();
+    mapping.setApplicationContext(ctx);
+    mapping.setSimpleTypeHolder(new MongoConfig().mongoCustomConversions().getSimpleTypeHolder());
+
+    mongo = mock(ReactiveMongoTemplate.class);
+    ensured = new HashMap<>();
+    for (Class<?> type : MongoIndexesConfig.ENTITIES) {
+      ReactiveIndexOperations ops = mock(ReactiveIndexOperations.class);
+      when(ops.ensureIndex(any(IndexDefinition.class))).thenAnswer(inv -> {
+        IndexDefinition def = inv.getArgument(0);
+        ensured.computeIfAbsent(type, t -> new ArrayList<>()).add(def.getIndexOptions());
+        return Mono.just((String) def.getIndexOptions().get("name"));
+      });
+      when(mongo.indexOps(type)).thenReturn(ops);
+    }
+    config = new MongoIndexesConfig(mongo, mapping);
+  }
+
+  private org.bson.Document index(Class<?> type, String name) {
+    return ensured.getOrDefault(type, List.of()).stream()
+        .filter(o -> name.equals(o.get("name")))
+        .findFirst()
+        .orElseGet(() -> fail(type.getSimpleName() + " sin índice " + name));
+  }
+
+  @Test
+  void startup_ensures_every_annotated_index_of_the_auxiliary_collections() {
+    StepVerifier.create(config.ensureIndexes()).expectNextCount(7).verifyComplete();
+
+    assertEquals(true, index(CardOperationRecord.class, "cardId_operationId").get("unique"));
+    assertEquals(30 * 86400L, index(CardOperationRecord.class, "createdAt_ttl").get("expireAfterSeconds"));
+    assertNotNull(index(DebitSagaRecord.class, "state_updatedAt"));
+    assertEquals(30 * 86400L, index(DebitSagaRecord.class, "completedAt_ttl").get("expireAfterSeconds"));
+    assertNotNull(index(TxOutboxRecord.class, "status_nextAttemptAt"));
+    assertEquals(7 * 86400L, index(TxOutboxRecord.class, "sentAt_ttl").get("expireAfterSeconds"));
+    assertNotNull(index(CompensationRecord.class, "status_updatedAt"));
+  }
+
+  @Test
+  void a_failing_index_does_not_stop_the_others() {
+    ReactiveIndexOperations failing = mock(ReactiveIndexOperations.class);
+    when(failing.ensureIndex(any(IndexDefinition.class)))
+        .thenReturn(Mono.error(new IllegalStateException("IndexOptionsConflict")));
+    when(mongo.indexOps(CardOperationRecord.class)).thenReturn(failing);
+
+    StepVerifier.create(config.ensureIndexes()).expectNextCount(5).verifyComplete();
+
+    assertNotNull(index(CompensationRecord.class, "status_updatedAt"));
+  }
+}
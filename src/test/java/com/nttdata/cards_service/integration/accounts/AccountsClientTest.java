@@ -1,8 +1,10 @@
 package com.nttdata.cards_service.integration.accounts;
 
+import com.nttdata.cards_service.config.WebClientConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
 import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -13,6 +15,7 @@ import org.springframework.web.server.ResponseStatusException;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -67,4 +70,102 @@ class AccountsClientTest {
 
     server.shutdown();
   }
+
+  @Test
+  void getAccounts_batch_unaSolaLlamada_enOrdenPedido() throws Exception {
+    MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setResponseCode(200)
+        .setHeader("Content-Type","application/json")
+        .setBody("[{\"id\":\"A2\",\"balance\":20},{\"id\":\"A1\",\"balance\":10}]"));
+    server.start();
+    String base = server.url("/api/v1").toString();
+
+    AccountsClient client = new AccountsClient(
+        WebClient.builder().baseUrl(base).build(),
+        CircuitBreakerRegistry.ofDefaults(),
+        TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(2)).build())
+    );
+
+    StepVerifier.create(client.getAccounts(List.of("A1", "A2")))
+        .expectNextMatches(m -> List.of("A1", "A2").equals(List.copyOf(m.keySet()))
+            && m.get("A2").getBalance() == 20.0)
+        .verifyComplete();
+
+    RecordedRequest req = server.takeRequest();
+    assertEquals("POST", req.getMethod());
+    assertEquals("/api/v1/accounts/batch", req.getRequestUrl().encodedPath());
+    assertEquals("{\"ids\":[\"A1\",\"A2\"]}", req.getBody().readUtf8());
+    assertEquals(1, server.getRequestCount());
+    server.shutdown();
+  }
+
+  @Test
+  void getAccounts_sinBatch_usaGetIndividuales_yRecuerdaElFallback() throws Exception {
+    MockWebServer server = new MockWebServer();
+    server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getRequestUrl().encodedPath();
+        if (path.endsWith("/accounts/batch")) return new MockResponse().setResponseCode(405);
+        if (path.endsWith("/accounts/A9")) return new MockResponse().setResponseCode(404);
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        return new MockResponse().setResponseCode(200)
+            .setHeader("Content-Type","application/json")
+            .setBody("{\"id\":\"" + id + "\",\"balance\":5}");
+      }
+    });
+    server.start();
+    String base = server.url("/api/v1").toString();
+
+    CircuitBreakerRegistry breakers = CircuitBreakerRegistry.ofDefaults();
+    AccountsClient client = new AccountsClient(
+        WebClient.builder().baseUrl(base).build(),
+        breakers,
+        TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(2)).build())
+    );
+
+    StepVerifier.create(client.getAccounts(List.of("A1", "A2")))
+        .expectNextMatches(m -> List.of("A1", "A2").equals(List.copyOf(m.keySet())))
+        .verifyComplete();
+    assertEquals(3, server.getRequestCount());
+    // el 405 del batch no cuenta como fallo para el circuit breaker
+    assertEquals(0, breakers.circuitBreaker("accounts").getMetrics().getNumberOfFailedCalls());
+
+    // ya no vuelve a intentar el batch; una cuenta inexistente falla igual que getAccount
+    StepVerifier.create(client.getAccounts(List.of("A1", "A9")))
+        .expectErrorSatisfies(ex -> assertEquals("Account not found", ex.getMessage()))
+        .verify();
+    assertEquals(5, server.getRequestCount());
+    server.shutdown();
+  }
+
+  @Test
+  void llamadas_salientes_registran_timer_por_cliente_plantilla_y_resultado() throws Exception {
+    MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setResponseCode(200)
+        .setHeader("Content-Type","application/json")
+        .setBody("{\"id\":\"A1\",\"balance\":10}"));
+    server.enqueue(new MockResponse().setResponseCode(404));
+    server.start();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    AccountsClient client = new AccountsClient(
+        new WebClientConfig().accountsWebClient(server.url("/api/v1").toString(), registry),
+        CircuitBreakerRegistry.ofDefaults(),
+        // aquí no se prueba el timeout: margen para el arranque en frío del cliente Netty
+        TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(30)).build())
+    );
+
+    StepVerifier.create(client.getAccount("A1")).expectNextCount(1).verifyComplete();
+    StepVerifier.create(client.getAccount("A2")).expectError(IllegalArgumentException.class).verify();
+
+    // la uri es la plantilla: A1 y A2 comparten serie y se separan por resultado
+    assertEquals(1, registry.get("http.client.requests")
+        .tags("client", "accounts", "uri", "/accounts/{id}", "method", "GET", "outcome", "SUCCESS")
+        .timer().count());
+    assertEquals(1, registry.get("http.client.requests")
+        .tags("client", "accounts", "uri", "/accounts/{id}", "status", "404", "outcome", "CLIENT_ERROR")
+        .timer().count());
+    server.shutdown();
+  }
 }
@@ -0,0 +1,49 @@
+package com.nttdata.cards_service.kafka;
+
+import com.nttdata.cards_service.integration.accounts.*;
+import com.nttdata.cards_service.kafka.events.*;
+import com.nttdata.cards_service.repository.*;
+import com.nttdata.cards_service.service.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+
+import java.math.*;
+import java.time.*;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardOperationRequestedConsumerTest {
+
+  @Mock CardRepository repo;
+  @Mock DebitOrchestratorService debitOrchestrator;
+  @Mock AccountsClient accountsClient;
+  @Mock CardOperationResultProducer results;
+  @Mock PrimaryBalanceUpdatedProducer balanceEvents;
+  @Mock FundsUpperBoundCache fundsBound;
+
+  @InjectMocks CardOperationRequestedConsumer consumer;
+
+  @Test
+  void debit_without_positive_amount_is_denied_without_touching_accounts() {
+    for (BigDecimal amount : new BigDecimal[]{null, BigDecimal.ZERO, new BigDecimal("-5"), new BigDecimal("0.004")}) {
+      consumer.onCardDebitRequested(new CardDebitRequestedEvent("OP1", "C1", amount, "T1", Instant.now()));
+    }
+
+    verify(results, times(4)).publishDebitDenied(eq("OP1"), eq("C1"), startsWith("Invalid amount"), eq("T1"));
+    verifyNoInteractions(repo, debitOrchestrator, accountsClient, balanceEvents);
+  }
+
+  @Test
+  void credit_without_positive_amount_is_denied_without_touching_accounts() {
+    for (BigDecimal amount : new BigDecimal[]{null, BigDecimal.ZERO, new BigDecimal("-5")}) {
+      consumer.onCardCreditRequested(new CardDebitTransferInRequestedEvent("OP2", "C1", amount, "T1", Instant.now()));
+    }
+
+    verify(results, times(3)).publishCreditDenied(eq("OP2"), eq("C1"), startsWith("Invalid amount"), eq("T1"));
+    verifyNoInteractions(repo, debitOrchestrator, accountsClient, balanceEvents, fundsBound);
+  }
+}
@@ -0,0 +1,275 @@
+package com.nttdata.cards_service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nttdata.cards_service.model.CardResponse;
+import com.nttdata.cards_service.model.entity.Card;
+import com.nttdata.cards_service.repository.CardRepository;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Prueba de carga de extremo a extremo: el servicio completo (seguridad JWT, Mongo, Redis, Kafka, outbox,
+// sagas) contra dobles locales de Accounts, Credits y Transactions con latencia y errores configurables.
+// Solo se ejecuta con -Ploadtest; el informe queda en loadtest.report (por defecto target/loadtest/report.txt).
+@Slf4j
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, 
+    // sin Config Server: se sustituye application.properties (y su import obligatorio) por la del perfil
+    properties = "spring.config.location=classpath:/application-loadtest.properties")
+@ActiveProfiles("loadtest")
+@EmbeddedKafka(partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+class CardsLoadTest {
+
+  private static final String ISSUER_PATH = "/realms/loadtest";
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+  private static final RedisServer REDIS;
+  private static final RSAKey SIGNING_KEY;
+  private static final RemoteStandIn ISSUER;
+  private static final RemoteStandIn ACCOUNTS;
+  private static final RemoteStandIn CREDITS;
+  private static final RemoteStandIn TRANSACTIONS;
+  // transacciones que devuelve Transactions por producto; se fija antes de medir
+  private static volatile int transactionsPerProduct = 20;
+
+  static {
+    try {
+      REDIS = RedisServer.newRedisServer().start();
+      SIGNING_KEY = new RSAKeyGenerator(2048).keyID("loadtest").generate();
+      String jwks = new JWKSet(SIGNING_KEY.toPublicJWK()).toString();
+      ISSUER = new RemoteStandIn("issuer", req -> RemoteStandIn.json(200, jwks));
+      ACCOUNTS = new RemoteStandIn("accounts", CardsLoadTest::accounts);
+      CREDITS = new RemoteStandIn("credits", req -> RemoteStandIn.json(200, "{}"));
+      TRANSACTIONS = new RemoteStandIn("transactions", CardsLoadTest::transactions);
+    } catch (Exception e) {
+      throw new IllegalStateException("No se pudo levantar la infraestructura de la prueba de carga", e);
+    }
+  }
+
+  // jedis-mock no habla RESP3: Lettuce debe saltarse el HELLO inicial
+  @TestConfiguration
+  static class Resp2Redis {
+    @Bean
+    LettuceClientConfigurationBuilderCustomizer resp2() {
+      return builder -> builder.clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+    }
+  }
+
+  @DynamicPropertySource
+  static void infrastructure(DynamicPropertyRegistry registry) {
+    InetSocketAddress mongo = MONGO.bind();
+    registry.add("spring.data.mongodb.uri",
+        () -> "mongodb://" + mongo.getHostString() + ":" + mongo.getPort() + "/cards_loadtest");
+    registry.add("spring.redis.host", REDIS::getHost);
+    registry.add("spring.redis.port", REDIS::getBindPort);
+    registry.add("service.accounts.base-url", () -> ACCOUNTS.url("/api"));
+    registry.add("service.credits.base-url", () -> CREDITS.url("/api"));
+    registry.add("service.transactions.base-url", () -> TRANSACTIONS.url("/api"));
+    registry.add("app.auth.allowed-issuers", () -> ISSUER.url(ISSUER_PATH));
+  }
+
+  @AfterAll
+  static void shutdown() throws IOException {
+    for (RemoteStandIn s : List.of(ISSUER, ACCOUNTS, CREDITS, TRANSACTIONS)) s.close();
+    REDIS.stop();
+    MONGO.shutdownNow();
+  }
+
+  @LocalServerPort
+  int port;
+  @Autowired
+  Environment env;
+  @Autowired
+  CardRepository cards;
+
+  @Test
+  void debit_movements_and_balance_under_load() throws Exception {
+    ACCOUNTS.configure(duration("loadtest.accounts.median-latency"), duration("loadtest.accounts.p99-latency"),
+        env.getProperty("loadtest.accounts.error-rate", Double.class, 0.0));
+    CREDITS.configure(duration("loadtest.credits.median-latency"), duration("loadtest.credits.p99-latency"),
+        env.getProperty("loadtest.credits.error-rate", Double.class, 0.0));
+    TRANSACTIONS.configure(duration("loadtest.transactions.median-latency"), duration("loadtest.transactions.p99-latency"),
+        env.getProperty("loadtest.transactions.error-rate", Double.class, 0.0));
+    transactionsPerProduct = env.getProperty("loadtest.transactions-per-product", Integer.class, 20);
+
+    List<String> cardIds = seedCards(env.getProperty("loadtest.cards", Integer.class, 50),
+        env.getProperty("loadtest.accounts-per-card", Integer.class, 3));
+    double amount = env.getProperty("loadtest.payment-amount", Double.class, 10.0);
+    int movementsLimit = env.getProperty("loadtest.movements-limit", Integer.class, 10);
+
+    LoadDriver driver = new LoadDriver("http://localhost:" + port, token())
+        .scenario("payments", env.getProperty("loadtest.mix.payments", Integer.class, 6), web -> web.post()
+            .uri("/api/cards/{id}/debit/payments", anyOf(cardIds))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(Map.of("operationId", UUID.randomUUID().toString(), "amount", amount,
+                "merchant", "loadtest", "channel", "POS")))
+        .scenario("movements", env.getProperty("loadtest.mix.movements", Integer.class, 2), web -> web.get()
+            .uri("/api/cards/{id}/movements?limit={limit}", anyOf(cardIds), movementsLimit))
+        .scenario("balance", env.getProperty("loadtest.mix.balance", Integer.class, 2), web -> web.get()
+            .uri("/api/cards/{id}/primary-account/balance", anyOf(cardIds)));
+
+    int concurrency = env.getProperty("loadtest.concurrency", Integer.class, 32);
+    Duration warmup = duration("loadtest.warmup");
+    Duration measured = duration("loadtest.duration");
+    LoadDriver.Result result = driver.run(concurrency, warmup, measured);
+
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("concurrency", concurrency);
+    settings.put("cards x accounts", cardIds.size() + " x " + env.getProperty("loadtest.accounts-per-card"));
+    settings.put("warmup / duration", warmup + " / " + measured);
+    for (String svc : List.of("accounts", "credits", "transactions")) {
+      settings.put(svc + " latency (p50/p99)", env.getProperty("loadtest." + svc + ".median-latency") + " / "
+          + env.getProperty("loadtest." + svc + ".p99-latency") + ", errors "
+          + env.getProperty("loadtest." + svc + ".error-rate"));
+    }
+    String report = LoadReport.render(result, List.of(ACCOUNTS, CREDITS, TRANSACTIONS), settings);
+    Path out = Path.of(env.getProperty("loadtest.report", "target/loadtest/report.txt"));
+    Files.createDirectories(out.toAbsolutePath().getParent());
+    Files.writeString(out, report, StandardCharsets.UTF_8);
+    log.info("Informe de carga en {}\n{}", out.toAbsolutePath(), report);
+
+    assertTrue(result.total() > 0, "El generador no completó ninguna petición");
+  }
+
+  private Duration duration(String key) {
+    return env.getProperty(key, Duration.class, Duration.ZERO);
+  }
+
+  private List<String> seedCards(int n, int accountsPerCard) {
+    List<Card> seeded = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      Card c = new Card();
+      c.setId("LT-CARD-" + i);
+      c.setCardNumber(String.format("4000%012d", i));
+      c.setCardType("DEBIT");
+      c.setBrand("VISA");
+      c.setCustomerId("LT-CUST-" + i);
+      c.setStatus(CardResponse.StatusEnum.ACTIVE);
+      List<String> accounts = new ArrayList<>();
+      for (int k = 0; k < Math.max(1, accountsPerCard); k++) accounts.add("LT-ACC-" + i + "-" + k);
+      c.setPrimaryAccountId(accounts.get(0));
+      c.setAccounts(accounts);
+      c.setCreationDate(OffsetDateTime.now());
+      c.setUpdatedDate(OffsetDateTime.now());
+      seeded.add(c);
+    }
+    List<String> ids = new ArrayList<>(n);
+    cards.saveAll(seeded).map(Card::getId).doOnNext(ids::add).blockLast();
+    return ids;
+  }
+
+  private static String anyOf(List<String> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+  // JWT firmado con la clave cuyo JWKS publica el emisor simulado; scope Partners como exige SecurityConfig
+  private static String token() throws Exception {
+    JWTClaimsSet claims = new JWTClaimsSet.Builder()
+        .issuer(ISSUER.url(ISSUER_PATH))
+        .subject("loadtest")
+        .claim("scope", "Partners")
+        .issueTime(new Date())
+        .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(2))))
+        .build();
+    SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(SIGNING_KEY.getKeyID()).build(), claims);
+    jwt.sign(new RSASSASigner(SIGNING_KEY));
+    return jwt.serialize();
+  }
+
+  // Accounts: saldo holgado en todas las cuentas, batch por ids y balance-ops siempre aplicadas
+  private static MockResponse accounts(RecordedRequest req) {
+    String path = req.getRequestUrl().encodedPath();
+    try {
+      if ("POST".equals(req.getMethod()) && path.endsWith("/balance-ops")) {
+        return RemoteStandIn.json(200, "{\"applied\":true,\"newBalance\":1000000.0,\"commissionApplied\":0.0,\"message\":\"OK\"}");
+      }
+      if ("POST".equals(req.getMethod()) && path.endsWith("/accounts/batch")) {
+        JsonNode ids = JSON.readTree(req.getBody().readUtf8()).path("ids");
+        StringBuilder sb = new StringBuilder("[");
+        for (JsonNode id : ids) sb.append(sb.length() > 1 ? "," : "").append(account(id.asText()));
+        return RemoteStandIn.json(200, sb.append(']').toString());
+      }
+      if ("GET".equals(req.getMethod()) && path.contains("/accounts/")) {
+        return RemoteStandIn.json(200, account(path.substring(path.lastIndexOf('/') + 1)));
+      }
+    } catch (IOException e) {
+      return RemoteStandIn.json(400, "{\"message\":\"bad request\"}");
+    }
+    return RemoteStandIn.json(404, "{\"message\":\"not found\"}");
+  }
+
+  private static String account(String id) {
+    return "{\"id\":\"" + id + "\",\"accountType\":\"savings_account\",\"balance\":1000000.0,\"active\":true}";
+  }
+
+  // Transactions: alta de transacciones y listado por producto con N movimientos
+  private static MockResponse transactions(RecordedRequest req) {
+    String path = req.getRequestUrl().encodedPath();
+    if ("POST".equals(req.getMethod()) && path.endsWith("/transactions")) {
+      return RemoteStandIn.json(201, "{\"id\":\"" + UUID.randomUUID() + "\",\"type\":\"purchase\",\"amount\":10.0}");
+    }
+    if ("GET".equals(req.getMethod()) && path.contains("/transactions/product/")) {
+      String product = path.substring(path.lastIndexOf('/') + 1);
+      StringBuilder sb = new StringBuilder("{\"product\":{\"id\":\"").append(product)
+          .append("\",\"type\":\"savings_account\"},\"transactions\":[");
+      OffsetDateTime now = OffsetDateTime.now();
+      for (int i = 0; i < transactionsPerProduct; i++) {
+        if (i > 0) sb.append(',');
+        sb.append("{\"id\":\"").append(product).append("-TX-").append(i)
+            .append("\",\"type\":\"purchase\",\"amount\":10.0,\"createdDate\":\"").append(now.minusMinutes(i))
+            .append("\",\"sender\":{\"id\":\"").append(product).append("\",\"type\":\"savings_account\",\"number\":\"")
+            .append(product).append("\"}}");
+      }
+      return RemoteStandIn.json(200, sb.append("]}").toString());
+    }
+    return RemoteStandIn.json(404, "{\"message\":\"not found\"}");
+  }
+}
@@ -0,0 +1,132 @@
+package com.nttdata.cards_service.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Generador de carga de modelo cerrado: 'concurrency' clientes virtuales lanzan peticiones sin pausa
+// hasta agotar el tiempo; cada petición se elige por peso entre los escenarios registrados.
+// La latencia se mide de extremo a extremo (envío -> cuerpo recibido) en un histograma HDR por escenario.
+final class LoadDriver {
+
+  private final WebClient client;
+  private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+  private int totalWeight;
+
+  LoadDriver(String baseUrl, String bearerToken) {
+    this.client = WebClient.builder()
+        .baseUrl(baseUrl)
+        .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + bearerToken)
+        .build();
+  }
+
+  // request recibe el WebClient y devuelve la llamada ya preparada (sin suscribir)
+  LoadDriver scenario(String name, int weight, Function<WebClient, WebClient.RequestHeadersSpec<?>> request) {
+    if (weight <= 0) return this;
+    scenarios.put(name, new Scenario(name, weight, request));
+    totalWeight += weight;
+    return this;
+  }
+
+  Result run(int concurrency, Duration warmup, Duration duration) {
+    if (!warmup.isZero()) {
+      drive(concurrency, warmup).blockLast();
+      scenarios.values().forEach(Scenario::reset);
+    }
+    long start = System.nanoTime();
+    drive(concurrency, duration).blockLast();
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    return new Result(elapsed, new ArrayList<>(scenarios.values()));
+  }
+
+  private Flux<Void> drive(int concurrency, Duration duration) {
+    long deadline = System.nanoTime() + duration.toNanos();
+    return Flux.range(0, Math.max(1, concurrency))
+        .flatMap(vu -> Mono.defer(this::oneRequest)
+            .repeat(() -> System.nanoTime() < deadline), Math.max(1, concurrency));
+  }
+
+  private Mono<Void> oneRequest() {
+    Scenario s = pick();
+    long t0 = System.nanoTime();
+    return s.request.apply(client)
+        .exchangeToMono(resp -> resp.releaseBody().thenReturn(resp.rawStatusCode()))
+        .doOnNext(status -> s.record(status, System.nanoTime() - t0))
+        .onErrorResume(ex -> {
+          s.record(-1, System.nanoTime() - t0);
+          return Mono.empty();
+        })
+        .then();
+  }
+
+  private Scenario pick() {
+    int r = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Scenario s : scenarios.values()) {
+      r -= s.weight;
+      if (r < 0) return s;
+    }
+    throw new IllegalStateException("Sin escenarios de carga");
+  }
+
+  static final class Scenario {
+    final String name;
+    final int weight;
+    final Function<WebClient, WebClient.RequestHeadersSpec<?>> request;
+    // microsegundos, hasta 60 s con 3 dígitos significativos
+    final Histogram latency = new ConcurrentHistogram(60_000_000L, 3);
+    final LongAdder ok = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    // código HTTP -> peticiones (-1: error de conexión / timeout del cliente)
+    final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    Scenario(String name, int weight, Function<WebClient, WebClient.RequestHeadersSpec<?>> request) {
+      this.name = name;
+      this.weight = weight;
+      this.request = request;
+    }
+
+    void record(int status, long nanos) {
+      latency.recordValue(Math.min(latency.getHighestTrackableValue(), Math.max(1, nanos / 1000)));
+      (status >= 200 && status < 300 ? ok : failed).increment();
+      statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    void reset() {
+      latency.reset();
+      ok.reset();
+      failed.reset();
+      statuses.clear();
+    }
+
+    long total() {
+      return ok.sum() + failed.sum();
+    }
+  }
+
+  static final class Result {
+    final Duration elapsed;
+    final List<Scenario> scenarios;
+
+    Result(Duration elapsed, List<Scenario> scenarios) {
+      this.elapsed = elapsed;
+      this.scenarios = scenarios;
+    }
+
+    long total() {
+      return scenarios.stream().mapToLong(Scenario::total).sum();
+    }
+  }
+}
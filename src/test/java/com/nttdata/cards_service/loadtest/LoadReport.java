@@ -0,0 +1,49 @@
+package com.nttdata.cards_service.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Informe de texto: throughput y percentiles por escenario, y tráfico recibido por cada servicio simulado
+final class LoadReport {
+  private LoadReport() {}
+
+  static String render(LoadDriver.Result result, List<RemoteStandIn> standIns, Map<String, Object> settings) {
+    StringBuilder sb = new StringBuilder();
+    double seconds = result.elapsed.toNanos() / 1e9;
+    sb.append("=== cards-service load test ===\n");
+    settings.forEach((k, v) -> sb.append(String.format("%-32s %s%n", k, v)));
+    sb.append(String.format("%-32s %.1f s%n%n", "measured", seconds));
+
+    sb.append(String.format("%-12s %9s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+        "scenario", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "status"));
+    for (LoadDriver.Scenario s : result.scenarios) {
+      Histogram h = s.latency;
+      sb.append(String.format("%-12s %9d %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+          s.name, s.total(), s.failed.sum(), s.total() / seconds,
+          ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(95)), ms(h.getValueAtPercentile(99)),
+          ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()), statuses(s.statuses)));
+    }
+    sb.append(String.format("%-12s %9d %9s %9.1f%n%n", "total", result.total(), "", result.total() / seconds));
+
+    sb.append(String.format("%-14s %9s %9s%n", "stand-in", "requests", "injected"));
+    for (RemoteStandIn r : standIns) {
+      sb.append(String.format("%-14s %9d %9d%n", r.name(), r.requests(), r.injectedErrors()));
+    }
+    return sb.toString();
+  }
+
+  private static double ms(long micros) {
+    return micros / 1000.0;
+  }
+
+  private static String statuses(Map<Integer, LongAdder> statuses) {
+    StringBuilder sb = new StringBuilder();
+    new TreeMap<>(statuses).forEach((code, n) -> sb.append(sb.length() == 0 ? "" : " ")
+        .append(code < 0 ? "io" : code).append('=').append(n.sum()));
+    return sb.toString();
+  }
+}
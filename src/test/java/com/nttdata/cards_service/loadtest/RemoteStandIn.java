@@ -0,0 +1,96 @@
+package com.nttdata.cards_service.loadtest;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Servicio remoto simulado (Accounts, Credits, Transactions) sobre MockWebServer.
+// Cada respuesta se retrasa según una log-normal definida por su mediana y su p99,
+// y una fracción configurable responde 503 para ejercitar reintentos y circuit breakers.
+final class RemoteStandIn implements Closeable {
+
+  // cuantil 0.99 de la normal estándar
+  private static final double Z_99 = 2.326;
+
+  private final String name;
+  private final MockWebServer server = new MockWebServer();
+  private volatile double medianMillis;
+  private volatile double sigma;
+  private volatile double errorRate;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong injectedErrors = new AtomicLong();
+
+  // Arranca sin latencia ni errores: el perfil se aplica con configure() una vez levantado el servicio
+  RemoteStandIn(String name, Function<RecordedRequest, MockResponse> routes) throws IOException {
+    this.name = name;
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        requests.incrementAndGet();
+        MockResponse response = ThreadLocalRandom.current().nextDouble() < RemoteStandIn.this.errorRate
+            ? injectedError()
+            : routes.apply(request);
+        long delay = sampleDelayMicros();
+        return delay > 0 ? response.setHeadersDelay(delay, TimeUnit.MICROSECONDS) : response;
+      }
+    });
+    server.start();
+  }
+
+  RemoteStandIn configure(Duration median, Duration p99, double errorRate) {
+    this.medianMillis = median.toNanos() / 1_000_000.0;
+    this.sigma = medianMillis <= 0 || p99.compareTo(median) <= 0 ? 0.0
+        : Math.log((p99.toNanos() / 1_000_000.0) / medianMillis) / Z_99;
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  String name() {
+    return name;
+  }
+
+  // URL base con el prefijo que usan los clientes (p. ej. "/api")
+  String url(String path) {
+    return server.url(path).toString().replaceAll("/$", "");
+  }
+
+  long requests() {
+    return requests.get();
+  }
+
+  long injectedErrors() {
+    return injectedErrors.get();
+  }
+
+  private MockResponse injectedError() {
+    injectedErrors.incrementAndGet();
+    return json(503, "{\"message\":\"" + name + " stand-in: injected error\"}");
+  }
+
+  private long sampleDelayMicros() {
+    if (medianMillis <= 0) return 0;
+    double millis = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+    return (long) (millis * 1000);
+  }
+
+  static MockResponse json(int status, String body) {
+    return new MockResponse()
+        .setResponseCode(status)
+        .setHeader("Content-Type", "application/json")
+        .setBody(body);
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.shutdown();
+  }
+}
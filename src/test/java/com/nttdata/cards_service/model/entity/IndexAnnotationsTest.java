@@ -0,0 +1,43 @@
+package com.nttdata.cards_service.model.entity;
+
+import com.nttdata.cards_service.config.*;
+import org.junit.jupiter.api.*;
+import org.springframework.context.support.*;
+import org.springframework.core.env.*;
+import org.springframework.data.mongodb.core.index.*;
+import org.springframework.data.mongodb.core.mapping.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexAnnotationsTest {
+
+  private static Map<String, org.bson.Document> indexes(Class<?> type, Map<String, Object> props) {
+    StaticApplicationContext ctx = new StaticApplicationContext();
+    ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", props));
+    ctx.refresh();
+    MongoMappingContext mapping = new MongoMappingContext();
+    mapping.setApplicationContext(ctx);
+    // mismos tipos simples que en la aplicación (OffsetDateTime, LocalDate)
+    mapping.setSimpleTypeHolder(new MongoConfig().mongoCustomConversions().getSimpleTypeHolder());
+    return StreamSupport.stream(IndexResolver.create(mapping).resolveIndexFor(type).spliterator(), false)
+        .collect(Collectors.toMap(i -> (String) i.getIndexOptions().get("name"), IndexDefinition::getIndexOptions));
+  }
+
+  @Test
+  void ttl_indexes_take_their_duration_from_properties() {
+    Map<String, org.bson.Document> ops = indexes(CardOperationRecord.class, Map.of("cards.operations.ttl", "P2D"));
+    assertEquals(2 * 86400L, ops.get("createdAt_ttl").get("expireAfterSeconds"));
+    assertEquals(true, ops.get("cardId_operationId").get("unique"));
+
+    // la saga reserva el operationId durante la misma ventana de idempotencia
+    Map<String, org.bson.Document> sagas = indexes(DebitSagaRecord.class, Map.of("cards.operations.ttl", "P2D"));
+    assertEquals(2 * 86400L, sagas.get("completedAt_ttl").get("expireAfterSeconds"));
+    assertTrue(sagas.containsKey("state_updatedAt"));
+
+    Map<String, org.bson.Document> outbox = indexes(TxOutboxRecord.class, Map.of("cards.tx-outbox.sent-ttl", "PT6H"));
+    assertEquals(6 * 3600L, outbox.get("sentAt_ttl").get("expireAfterSeconds"));
+  }
+}
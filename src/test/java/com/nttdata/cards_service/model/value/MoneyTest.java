@@ -0,0 +1,27 @@
+package com.nttdata.cards_service.model.value;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+  @Test
+  void conversions_round_to_cents() {
+    assertEquals(1050L, Money.of(10.5).minor());
+    assertEquals(10L, Money.toMinor(0.1));
+    assertEquals(0L, Money.toMinor((Double) null));
+    assertEquals(1235L, Money.of(new BigDecimal("12.345")).minor());
+    assertEquals(new BigDecimal("12.35"), Money.of(new BigDecimal("12.345")).toBigDecimal());
+    assertEquals(0.3, Money.toDouble(Money.toMinor(0.1) + Money.toMinor(0.2)));
+    assertEquals("0.30", Money.of(0.3).toString());
+  }
+
+  @Test
+  void missing_input_amount_is_rejected_not_zero() {
+    assertThrows(IllegalArgumentException.class, () -> Money.toMinor((BigDecimal) null));
+    assertThrows(IllegalArgumentException.class, () -> Money.of((BigDecimal) null));
+  }
+}
@@ -2,7 +2,7 @@ package com.nttdata.cards_service.service;
 
 import org.junit.jupiter.api.Test;
 import com.nttdata.cards_service.model.CardOperationResponseSlices;
-import java.util.LinkedHashMap;
+import com.nttdata.cards_service.model.value.Money;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,23 +19,40 @@ class CardDomainUtilsTest {
 
   @Test
   void planSlices_exact_and_multiAccounts() {
-    var balances = new LinkedHashMap<String, Double>();
-    balances.put("A1", 30.0);
-    balances.put("A2", 50.0);
-
-    List<CardOperationResponseSlices> plan = CardDomainUtils.planSlices(60.0, balances);
+    List<CardOperationResponseSlices> plan = CardDomainUtils.planSlices(6000L,
+        new String[]{"A1", "A2", "A3"}, new long[]{3000L, 0L, 5000L});
     assertEquals(2, plan.size());
     assertEquals("A1", plan.get(0).getAccountId());
     assertEquals(30.0, plan.get(0).getAmount(), 0.0001);
-    assertEquals("A2", plan.get(1).getAccountId());
+    assertEquals("A3", plan.get(1).getAccountId());
     assertEquals(30.0, plan.get(1).getAmount(), 0.0001);
   }
 
   @Test
   void planSlices_throws_when_insufficient() {
-    var balances = new LinkedHashMap<String, Double>();
-    balances.put("A1", 10.0);
-    balances.put("A2", 5.0);
-    assertThrows(IllegalStateException.class, () -> CardDomainUtils.planSlices(20.1, balances));
+    assertThrows(IllegalStateException.class,
+        () -> CardDomainUtils.planSlices(2010L, new String[]{"A1", "A2"}, new long[]{1000L, 500L}));
+  }
+
+  @Test
+  void normalizeAccounts_dedupes_long_lists_and_handles_missing_primary() {
+    List<String> many = new ArrayList<>();
+    for (int i = 0; i < 20; i++) many.add("A" + (i % 12));
+    var out = CardDomainUtils.normalizeAccounts("A3", many);
+    assertEquals(12, out.size());
+    assertEquals("A3", out.get(0));
+    assertEquals("A0", out.get(1));
+
+    assertEquals(List.of("A1"), CardDomainUtils.normalizeAccounts(null, List.of("A1")));
+    assertEquals(List.of("P"), CardDomainUtils.normalizeAccounts("P", null));
+  }
+
+  @Test
+  void planSlices_has_no_floating_point_residue() {
+    // con double quedaba un "restante" de 1.4e-17 y se rechazaba por saldo insuficiente
+    long[] balances = {Money.toMinor(0.01), Money.toMinor(0.01), Money.toMinor(0.08)};
+    var plan = CardDomainUtils.planSlices(Money.toMinor(0.1), new String[]{"A1", "A2", "A3"}, balances);
+    assertEquals(3, plan.size());
+    assertEquals(0.08, plan.get(2).getAmount());
   }
 }
@@ -1,9 +1,12 @@
 package com.nttdata.cards_service.service;
 
+import com.nttdata.cards_service.model.CardOperationResponse;
 import com.nttdata.cards_service.model.entity.Card;
+import com.nttdata.cards_service.model.entity.CardOperationRecord;
 import com.nttdata.cards_service.model.value.StoredOperation;
 import org.junit.jupiter.api.Test;
 
+import java.time.OffsetDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,24 +28,17 @@ class CardOpsTest {
   }
 
   @Test
-  void upsertOperation_dedups_and_keeps_last_n() {
-    Card c = new Card();
-    for (int i=1;i<=5;i++) {
-      StoredOperation op = new StoredOperation(); op.setId("op"+i);
-      CardOps.upsertOperation(c, op, 5);
-    }
-    assertEquals(5, c.getOperations().size());
-
-    // upsert existing moves it to top without duplicates
-    StoredOperation op3 = new StoredOperation(); op3.setId("op3");
-    CardOps.upsertOperation(c, op3, 5);
-    assertEquals(5, c.getOperations().size());
-    assertEquals("op3", c.getOperations().get(0).getId());
-
-    // keep only last 3
-    StoredOperation op6 = new StoredOperation(); op6.setId("op6");
-    CardOps.upsertOperation(c, op6, 3);
-    assertEquals(3, c.getOperations().size());
-    assertEquals("op6", c.getOperations().get(0).getId());
+  void record_roundTrip_keeps_operation_fields() {
+    StoredOperation op = new StoredOperation();
+    op.setId("op1");
+    op.setKind("DEBIT_PAYMENT");
+    op.setCreatedAt(OffsetDateTime.now());
+    op.setResult(new CardOperationResponse().message("OK"));
+
+    CardOperationRecord r = CardOps.toRecord("C1", op);
+    assertEquals("C1", r.getCardId());
+    assertEquals("op1", r.getOperationId());
+
+    assertEquals(op, CardOps.toStoredOperation(r));
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package com.nttdata.cards_service.service;
+
+import com.mongodb.client.result.*;
+import com.nttdata.cards_service.integration.accounts.*;
+import com.nttdata.cards_service.integration.accounts.dto.*;
+import com.nttdata.cards_service.integration.transactions.dto.*;
+import com.nttdata.cards_service.model.*;
+import com.nttdata.cards_service.model.entity.*;
+import com.nttdata.cards_service.repository.*;
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CompensationExecutorTest {
+
+  private CompensationRepository repo;
+  private ReactiveMongoTemplate mongo;
+  private AccountsClient accounts;
+  private TransactionOutbox outbox;
+  private SimpleMeterRegistry registry;
+  private CompensationExecutor executor;
+
+  @BeforeEach
+  void init() {
+    repo = mock(CompensationRepository.class);
+    mongo = mock(ReactiveMongoTemplate.class);
+    accounts = mock(AccountsClient.class);
+    outbox = mock(TransactionOutbox.class);
+    registry = new SimpleMeterRegistry();
+    executor = new CompensationExecutor(repo, mongo, accounts, outbox, registry);
+
+    when(repo.insert(any(CompensationRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CompensationRecord.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    when(outbox.enqueue(anyString(), anyString(), anyList())).thenReturn(Mono.empty());
+  }
+
+  private static CardOperationResponseSlices slice(String accountId, double amount) {
+    CardOperationResponseSlices s = new CardOperationResponseSlices();
+    s.setAccountId(accountId);
+    s.setAmount(amount);
+    return s;
+  }
+
+  @Test
+  void compensate_reverses_slices_concurrently_and_registers_reversals() {
+    when(repo.findById("C1:OP1")).thenReturn(Mono.empty());
+    // el depósito de A1 no termina hasta que arranca el de A2: solo completa si van en paralelo
+    Sinks.One<BalanceOperationResponse> a1 = Sinks.one();
+    when(accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class))).thenReturn(a1.asMono());
+    when(accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse())
+            .doOnSubscribe(s -> a1.tryEmitValue(new BalanceOperationResponse())));
+
+    StepVerifier.create(executor.compensate("C1", "OP1", List.of(slice("A1", 15.0), slice("A2", 25.0)), "credits_failed"))
+        .expectComplete()
+        .verify(Duration.ofSeconds(2));
+
+    ArgumentCaptor<BalanceOperationRequest> cap = ArgumentCaptor.forClass(BalanceOperationRequest.class);
+    verify(accounts).applyBalanceOperation(eq("A1"), cap.capture());
+    verify(accounts).applyBalanceOperation(eq("A2"), cap.capture());
+    assertEquals("OP1#comp#0", cap.getAllValues().get(0).getOperationId());
+    assertEquals("deposit", cap.getAllValues().get(0).getType());
+    assertEquals(15.0, cap.getAllValues().get(0).getAmount(), 0.0001);
+    assertEquals("OP1#comp#1", cap.getAllValues().get(1).getOperationId());
+    assertEquals(25.0, cap.getAllValues().get(1).getAmount(), 0.0001);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<TxPost>> txCap = ArgumentCaptor.forClass(List.class);
+    verify(outbox).enqueue(eq("C1"), eq("C1:OP1#rev"), txCap.capture());
+    List<TxPost> posts = txCap.getValue();
+    assertEquals(2, posts.size());
+    assertEquals("reversal", posts.get(0).getType());
+    assertEquals("A1", posts.get(0).getReceiver().getId());
+    assertEquals(25.0, posts.get(1).getAmount(), 0.0001);
+    assertEquals("A2", posts.get(1).getReceiver().getId());
+
+    // dos marcas de slice + cierre del registro
+    verify(mongo, times(3)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CompensationRecord.class));
+    assertEquals(1, registry.timer("cards.compensation.duration", "outcome", "success").count());
+  }
+
+  @Test
+  void compensate_resumes_only_pending_slices() {
+    CompensationRecord existing = new CompensationRecord();
+    existing.setId("C1:OP1");
+    existing.setCardId("C1");
+    existing.setOperationId("OP1");
+    existing.setReason("credits_failed");
+    existing.setSlices(List.of(slice("A1", 15.0), slice("A2", 25.0)));
+    existing.setDoneSlices(new ArrayList<>(List.of(0)));
+    when(repo.findById("C1:OP1")).thenReturn(Mono.just(existing));
+    when(accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+
+    StepVerifier.create(executor.compensate("C1", "OP1", existing.getSlices(), "credits_failed"))
+        .verifyComplete();
+
+    verify(accounts, never()).applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class));
+    verify(accounts).applyBalanceOperation(eq("A2"), argThat(r -> "OP1#comp#1".equals(r.getOperationId())));
+    verify(repo, never()).insert(any(CompensationRecord.class));
+    assertEquals(1.0, registry.counter("cards.compensation.resumed").count(), 0.0001);
+  }
+
+  @Test
+  void compensate_already_done_is_a_noop() {
+    CompensationRecord existing = new CompensationRecord();
+    existing.setId("C1:OP1");
+    existing.setSlices(List.of(slice("A1", 15.0)));
+    existing.setStatus(CompensationRecord.DONE);
+    when(repo.findById("C1:OP1")).thenReturn(Mono.just(existing));
+
+    StepVerifier.create(executor.compensate("C1", "OP1", existing.getSlices(), "credits_failed"))
+        .verifyComplete();
+
+    verifyNoInteractions(accounts, outbox, mongo);
+  }
+
+  @Test
+  void compensate_failed_slice_keeps_progress_of_the_others_and_leaves_record_open() {
+    when(repo.findById("C1:OP1")).thenReturn(Mono.empty());
+    when(accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.error(new IllegalStateException("accounts down")));
+    when(accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+
+    StepVerifier.create(executor.compensate("C1", "OP1", List.of(slice("A1", 15.0), slice("A2", 25.0)), "credits_failed"))
+        .expectErrorMessage("accounts down")
+        .verify();
+
+    // solo se marcó el slice de A2; el registro no se cierra ni se encolan reversas
+    verify(mongo, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CompensationRecord.class));
+    verifyNoInteractions(outbox);
+    assertEquals(1, registry.timer("cards.compensation.duration", "outcome", "error").count());
+  }
+
+  @Test
+  void resume_after_crash_before_close_re_enqueues_reversals_under_the_same_ids() {
+    // todos los depósitos hechos; el nodo cayó antes de marcar DONE (quizá tras encolar)
+    CompensationRecord r = new CompensationRecord();
+    r.setId("C1:OP1");
+    r.setCardId("C1");
+    r.setOperationId("OP1");
+    r.setReason("debit_failed");
+    r.setSlices(List.of(slice("A1", 15.0), slice("A2", 25.0)));
+    r.setDoneSlices(new ArrayList<>(List.of(0, 1)));
+
+    StepVerifier.create(executor.resume(r)).verifyComplete();
+    StepVerifier.create(executor.resume(r)).verifyComplete();
+
+    verifyNoInteractions(accounts);
+    // misma clave en cada intento: el outbox ignora las filas que ya tiene
+    verify(outbox, times(2)).enqueue(eq("C1"), eq("C1:OP1#rev"), argThat(posts -> posts.size() == 2));
+  }
+
+  @Test
+  void stale_lists_in_progress_records_and_claim_moves_the_lease() {
+    CompensationRecord r = new CompensationRecord();
+    r.setId("C1:OP1");
+    OffsetDateTime seen = OffsetDateTime.now().minusMinutes(5);
+    r.setUpdatedAt(seen);
+    when(repo.findByStatusAndUpdatedAtLessThanEqualOrderByUpdatedAtAsc(
+        eq(CompensationRecord.IN_PROGRESS), any(OffsetDateTime.class), any()))
+        .thenReturn(Flux.just(r));
+
+    StepVerifier.create(executor.stale(OffsetDateTime.now(), 20)).expectNext(r).verifyComplete();
+    StepVerifier.create(executor.claim(r)).expectNext(true).verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    verify(mongo).updateFirst(q.capture(), any(UpdateDefinition.class), eq(CompensationRecord.class));
+    assertEquals(CompensationRecord.IN_PROGRESS, q.getValue().getQueryObject().get("status"));
+    assertEquals(seen, q.getValue().getQueryObject().get("updatedAt"));
+    assertTrue(r.getUpdatedAt().isAfter(seen));
+  }
+
+  @Test
+  void claim_loses_when_another_node_moved_the_record() {
+    when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CompensationRecord.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+    CompensationRecord r = new CompensationRecord();
+    r.setId("C1:OP1");
+    r.setUpdatedAt(OffsetDateTime.now().minusMinutes(5));
+
+    StepVerifier.create(executor.claim(r)).expectNext(false).verifyComplete();
+  }
+}
@@ -0,0 +1,58 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.model.entity.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CompensationRecoveryTest {
+
+  private CompensationExecutor compensations;
+  private CompensationRecovery recovery;
+
+  @BeforeEach
+  void init() {
+    compensations = mock(CompensationExecutor.class);
+    recovery = new CompensationRecovery(compensations);
+  }
+
+  private static CompensationRecord record(String id) {
+    CompensationRecord r = new CompensationRecord();
+    r.setId(id);
+    r.setSlices(List.of());
+    r.setUpdatedAt(OffsetDateTime.now().minusMinutes(5));
+    return r;
+  }
+
+  @Test
+  void recover_resumes_claimed_compensations_and_counts_finished_ones() {
+    CompensationRecord ok = record("C1:OP1");
+    CompensationRecord failing = record("C1:OP2");
+    when(compensations.stale(any(OffsetDateTime.class), anyInt())).thenReturn(Flux.just(ok, failing));
+    when(compensations.claim(any(CompensationRecord.class))).thenReturn(Mono.just(true));
+    when(compensations.resume(ok)).thenReturn(Mono.empty());
+    when(compensations.resume(failing)).thenReturn(Mono.error(new IllegalStateException("accounts down")));
+
+    StepVerifier.create(recovery.recover()).expectNext(1L).verifyComplete();
+
+    verify(compensations).resume(ok);
+    verify(compensations).resume(failing);
+  }
+
+  @Test
+  void recover_skips_compensations_claimed_by_another_node() {
+    CompensationRecord r = record("C1:OP1");
+    when(compensations.stale(any(OffsetDateTime.class), anyInt())).thenReturn(Flux.just(r));
+    when(compensations.claim(r)).thenReturn(Mono.just(false));
+
+    StepVerifier.create(recovery.recover()).expectNext(0L).verifyComplete();
+
+    verify(compensations, never()).resume(any(CompensationRecord.class));
+  }
+}
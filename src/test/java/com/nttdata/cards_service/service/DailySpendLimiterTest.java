@@ -0,0 +1,80 @@
+package com.nttdata.cards_service.service;
+
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.core.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DailySpendLimiterTest {
+
+  private ReactiveStringRedisTemplate redis;
+  private ReactiveValueOperations<String, String> ops;
+  private DailySpendLimiter limiter;
+  private LocalDate day;
+  private String key;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void init() {
+    redis = mock(ReactiveStringRedisTemplate.class);
+    ops = mock(ReactiveValueOperations.class);
+    when(redis.opsForValue()).thenReturn(ops);
+    when(redis.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+    limiter = new DailySpendLimiter(redis);
+    day = limiter.today();
+    key = "cards::dailySpend:C1:" + day;
+  }
+
+  @Test
+  void reserve_within_limit_increments_and_expires_at_end_of_day() {
+    when(ops.increment(key, 4000L)).thenReturn(Mono.just(4000L));
+
+    StepVerifier.create(limiter.reserve("C1", day, 4000L, 10000L)).verifyComplete();
+
+    verify(redis).expire(eq(key), argThat(d -> !d.isNegative() && d.compareTo(Duration.ofDays(1)) <= 0));
+    verify(ops, never()).increment(key, -4000L);
+  }
+
+  @Test
+  void reserve_over_limit_undoes_increment_and_next_reject_is_local() {
+    when(ops.increment(key, 5000L)).thenReturn(Mono.just(5000L));
+    // entre medias otro nodo gastó 30: Redis devuelve 110 (en céntimos)
+    when(ops.increment(key, 3000L)).thenReturn(Mono.just(11000L));
+    when(ops.increment(key, -3000L)).thenReturn(Mono.just(8000L));
+
+    StepVerifier.create(limiter.reserve("C1", day, 5000L, 10000L)).verifyComplete();
+    StepVerifier.create(limiter.reserve("C1", day, 3000L, 10000L))
+        .expectErrorMessage("Daily purchase limit exceeded")
+        .verify();
+    verify(ops).increment(key, -3000L);
+
+    // el acumulado local (80) ya no admite otros 30: se rechaza sin ir a Redis
+    StepVerifier.create(limiter.reserve("C1", day, 3000L, 10000L))
+        .expectErrorMessage("Daily purchase limit exceeded")
+        .verify();
+    verify(ops, times(1)).increment(key, 3000L);
+  }
+
+  @Test
+  void local_total_never_approves_without_redis() {
+    when(ops.increment(key, 2000L)).thenReturn(Mono.just(2000L));
+    // la copia local dice 20 pero otro nodo ya llevó el acumulado a 95: manda el INCRBY
+    when(ops.increment(key, 1000L)).thenReturn(Mono.just(10500L));
+    when(ops.increment(key, -1000L)).thenReturn(Mono.just(9500L));
+
+    StepVerifier.create(limiter.reserve("C1", day, 2000L, 10000L)).verifyComplete();
+    StepVerifier.create(limiter.reserve("C1", day, 1000L, 10000L))
+        .expectErrorMessage("Daily purchase limit exceeded")
+        .verify();
+
+    verify(ops).increment(key, 1000L);
+    verify(ops).increment(key, -1000L);
+    // solo el INCRBY que creó la clave fija la expiración
+    verify(redis, times(1)).expire(eq(key), any(Duration.class));
+  }
+}
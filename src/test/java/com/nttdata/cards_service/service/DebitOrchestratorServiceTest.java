@@ -1,15 +1,18 @@
 package com.nttdata.cards_service.service;
 
+import com.nttdata.cards_service.cache.*;
 import com.nttdata.cards_service.integration.accounts.*;
 import com.nttdata.cards_service.integration.accounts.dto.*;
-import com.nttdata.cards_service.integration.transactions.*;
 import com.nttdata.cards_service.integration.transactions.dto.*;
 import com.nttdata.cards_service.model.*;
 import com.nttdata.cards_service.model.entity.*;
 import com.nttdata.cards_service.model.value.*;
 import com.nttdata.cards_service.repository.*;
+import com.nttdata.cards_service.service.slicing.*;
+import io.micrometer.core.instrument.simple.*;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
+import org.springframework.test.util.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
 
@@ -23,44 +26,126 @@ import static org.mockito.Mockito.*;
 
 class DebitOrchestratorServiceTest {
 
-  @Test
-  void debit_happyPath_slicesAcrossAccounts_and_persists() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
+  // card_operations vacío que acepta cualquier inserción
+  private static CardOperationRepository operations() {
+    CardOperationRepository ops = mock(CardOperationRepository.class);
+    when(ops.findByCardIdAndOperationId(anyString(), anyString())).thenReturn(Mono.empty());
+    when(ops.insert(any(CardOperationRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    return ops;
+  }
+
+  private static SlicePlanners planners() {
+    return new SlicePlanners(List.of(new GreedySlicePlanner()), new SliceCommissionStats());
+  }
+
+  private static DebitSagaLog sagas() {
+    DebitSagaLog sagas = mock(DebitSagaLog.class);
+    when(sagas.start(any(DebitSagaRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    when(sagas.slicesApplied(any(DebitSagaRecord.class), anyList())).thenAnswer(inv -> {
+      ((DebitSagaRecord) inv.getArgument(0)).setApplied(inv.getArgument(1));
+      return Mono.empty();
+    });
+    when(sagas.compensating(any(DebitSagaRecord.class), anyList())).thenReturn(Mono.empty());
+    when(sagas.advance(any(DebitSagaRecord.class), anyString())).thenReturn(Mono.empty());
+    when(sagas.discard(any(DebitSagaRecord.class))).thenAnswer(inv -> {
+      ((DebitSagaRecord) inv.getArgument(0)).setState(DebitSagaRecord.DISCARDED);
+      return Mono.empty();
+    });
+    return sagas;
+  }
+
+  private static CardsCacheService cache() {
+    CardsCacheService cache = mock(CardsCacheService.class);
+    when(cache.evictCard(anyString())).thenReturn(Mono.empty());
+    when(cache.evictPrimaryBalance(anyString())).thenReturn(Mono.empty());
+    return cache;
+  }
+
+  private static FundsUpperBoundCache funds() {
+    FundsUpperBoundCache funds = mock(FundsUpperBoundCache.class);
+    when(funds.get(anyString())).thenReturn(Mono.empty());
+    when(funds.remember(anyString(), anyLong())).thenReturn(Mono.empty());
+    when(funds.evict(anyString())).thenReturn(Mono.empty());
+    return funds;
+  }
+
 
+  private static Mono<BalanceOperationResponse> ok(double commission) {
+    BalanceOperationResponse r = new BalanceOperationResponse();
+    r.setCommissionApplied(commission);
+    return Mono.just(r);
+  }
+
+  private static AccountDto account(String id, double balance) {
+    AccountDto a = new AccountDto();
+    a.setId(id);
+    a.setBalance(balance);
+    return a;
+  }
+
+  // Tarjeta de débito activa con A1 como principal y las asociadas indicadas
+  private static Card debitCard(String id, String... linked) {
     Card card = new Card();
-    card.setId("C1");
+    card.setId(id);
     card.setCardType("DEBIT");
     card.setStatus(ACTIVE);
     card.setPrimaryAccountId("A1");
-    card.setAccounts(List.of("A2"));
-    card.setCreationDate(OffsetDateTime.now());
-
-    when(repo.findById("C1")).thenReturn(Mono.just(card));
-    when(repo.save(any(Card.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
-    AccountDto a1 = new AccountDto();
-    a1.setId("A1");
-    a1.setBalance(30.0);
-    a1.setActive(true);
-    AccountDto a2 = new AccountDto();
-    a2.setId("A2");
-    a2.setBalance(50.0);
-    a2.setActive(true);
-    when(accounts.getAccount("A1")).thenReturn(Mono.just(a1));
-    when(accounts.getAccount("A2")).thenReturn(Mono.just(a2));
-
-    BalanceOperationResponse r1 = new BalanceOperationResponse();
-    r1.setCommissionApplied(0.5);
-    BalanceOperationResponse r2 = new BalanceOperationResponse();
-    r2.setCommissionApplied(0.0);
-    when(accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class))).thenReturn(Mono.just(r1));
-    when(accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class))).thenReturn(Mono.just(r2));
-
-    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    if (linked.length > 0) card.setAccounts(List.of(linked));
+    return card;
+  }
+
+  private static Card twoAccountCard(String id) {
+    return debitCard(id, "A2");
+  }
+
+  // Colaboradores del orquestador con su comportamiento por defecto (sin operaciones previas, sagas,
+  // outbox y cachés que aceptan todo); cada test ajusta y verifica solo los que le importan
+  private static final class Fixture {
+    final CardRepository repo = mock(CardRepository.class);
+    CardOperationRepository ops = operations();
+    final AccountsClient accounts = mock(AccountsClient.class);
+    final TransactionOutbox outbox = mock(TransactionOutbox.class);
+    final DailySpendLimiter limiter = mock(DailySpendLimiter.class);
+    final FundsUpperBoundCache funds = funds();
+    final CardsCacheService cache = cache();
+    final CompensationExecutor compensations = mock(CompensationExecutor.class);
+    final DebitSagaLog sagas = sagas();
+    SlicePlanners planners = planners();
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    Fixture() {
+      when(repo.touchUpdatedDate(anyString(), any(OffsetDateTime.class))).thenReturn(Mono.empty());
+      when(outbox.enqueue(anyString(), anyString(), anyList())).thenReturn(Mono.empty());
+    }
+
+    Fixture card(Card card) {
+      when(repo.findById(card.getId())).thenReturn(Mono.just(card));
+      return this;
+    }
+
+    Fixture primary(double balance) {
+      when(accounts.getAccount("A1")).thenReturn(Mono.just(account("A1", balance)));
+      return this;
+    }
+
+    Fixture balances(double a1Balance, double a2Balance) {
+      primary(a1Balance);
+      when(accounts.getAccounts(List.of("A2"))).thenReturn(Mono.just(Map.of("A2", account("A2", a2Balance))));
+      return this;
+    }
+
+    DebitOrchestratorService build() {
+      return new DebitOrchestratorService(repo, ops, accounts, outbox, limiter, funds, cache, compensations, sagas,
+          planners, registry);
+    }
+  }
+
+  @Test
+  void debit_happyPath_slicesAcrossAccounts_and_persists() {
+    Fixture f = new Fixture().card(debitCard("C1", "A2")).balances(30.0, 50.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class))).thenReturn(ok(0.5));
+    when(f.accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class))).thenReturn(ok(0.0));
+    DebitOrchestratorService svc = f.build();
 
     StepVerifier.create(svc.debit("C1", "OP1", 40.0, "DEBIT_PAYMENT", Map.of("k", "v"), "purchase"))
         .assertNext(stored -> {
@@ -77,24 +162,162 @@ class DebitOrchestratorServiceTest {
         })
         .verifyComplete();
 
-    // verificamos que se registraron 2 transacciones (una por slice)
-    verify(tx, times(2)).create(any(TxPost.class));
-    ArgumentCaptor<Card> saved = ArgumentCaptor.forClass(Card.class);
-    verify(repo).save(saved.capture());
-    assertEquals(1, saved.getValue().getOperations().size());
+    // verificamos que se encolaron 2 transacciones (una por slice)
+    verify(f.outbox).enqueue(eq("C1"), anyString(), argThat(posts -> posts.size() == 2));
+    // saldo y updatedDate cambiaron: fuera de caché
+    verify(f.cache).evictCard("C1");
+    verify(f.cache).evictPrimaryBalance("C1");
+    // la tarjeta solo recibe un $set de updatedDate; nunca se reescribe el documento completo
+    verify(f.repo).touchUpdatedDate(eq("C1"), any(OffsetDateTime.class));
+    verify(f.repo, never()).save(any(Card.class));
+  }
+
+  @Test
+  void debit_records_operation_in_dedicated_store() {
+    Fixture f = new Fixture().card(debitCard("C13")).primary(100.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C13", "OP13", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectNextMatches(op -> "OP13".equals(op.getId()))
+        .verifyComplete();
+
+    // un débito nuevo no consulta card_operations antes de ejecutarse
+    verify(f.ops, never()).findByCardIdAndOperationId(anyString(), anyString());
+    ArgumentCaptor<CardOperationRecord> cap = ArgumentCaptor.forClass(CardOperationRecord.class);
+    verify(f.ops).insert(cap.capture());
+    assertEquals("C13", cap.getValue().getCardId());
+    assertEquals("OP13", cap.getValue().getOperationId());
+    assertEquals("DEBIT_PAYMENT", cap.getValue().getKind());
+    assertNotNull(cap.getValue().getCreatedAt());
+    assertEquals(40.0, cap.getValue().getResult().getTotalAmount(), 0.0001);
+  }
+
+  @Test
+  void debit_replay_is_detected_by_the_saga_insert_and_returns_the_stored_result() {
+    Fixture f = new Fixture();
+    f.ops = mock(CardOperationRepository.class);
+    Card card = debitCard("C14");
+    CardRequestLimits limits = new CardRequestLimits();
+    limits.setDailyPurchaseLimit(100.0);
+    card.setLimits(limits);
+    f.card(card).primary(100.0);
+    LocalDate day = LocalDate.of(2024, 1, 1);
+    when(f.limiter.today()).thenReturn(day);
+    when(f.limiter.reserve("C14", day, 1000L, 10000L)).thenReturn(Mono.empty());
+    when(f.limiter.release("C14", day, 1000L)).thenReturn(Mono.empty());
+
+    // la saga del primer intento ya existe: el _id duplicado delata el reintento
+    when(f.sagas.start(any(DebitSagaRecord.class)))
+        .thenReturn(Mono.error(new IllegalStateException("Operation OP14 is in progress")));
+    CardOperationRecord prev = new CardOperationRecord();
+    prev.setCardId("C14");
+    prev.setOperationId("OP14");
+    CardOperationResponse res = new CardOperationResponse();
+    res.setMessage("PREV");
+    prev.setResult(res);
+    when(f.ops.findByCardIdAndOperationId("C14", "OP14")).thenReturn(Mono.just(prev));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C14", "OP14", 10.0, "ANY", Map.of(), "purchase"))
+        .expectNextMatches(s -> "OP14".equals(s.getId()) && "PREV".equals(s.getResult().getMessage()))
+        .verifyComplete();
+
+    // no se mueve dinero ni se registra nada, y la reserva del límite diario se devuelve
+    verify(f.accounts, never()).applyBalanceOperation(anyString(), any(BalanceOperationRequest.class));
+    verify(f.ops, never()).insert(any(CardOperationRecord.class));
+    verifyNoInteractions(f.outbox);
+    verify(f.limiter).release("C14", day, 1000L);
+  }
+
+  @Test
+  void debit_fetches_remaining_balances_in_one_batch_keeping_association_order() {
+    Fixture f = new Fixture().card(debitCard("C8", "A2", "A3")).primary(5.0);
+    Map<String, AccountDto> rest = new LinkedHashMap<>();
+    rest.put("A2", account("A2", 10.0));
+    rest.put("A3", account("A3", 50.0));
+    when(f.accounts.getAccounts(List.of("A2", "A3"))).thenReturn(Mono.just(rest));
+    when(f.accounts.applyBalanceOperation(anyString(), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C8", "OP8", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .assertNext(stored -> {
+          List<CardOperationResponseSlices> slices = stored.getResult().getSlices();
+          assertEquals(3, slices.size());
+          assertEquals("A1", slices.get(0).getAccountId());
+          assertEquals(5.0, slices.get(0).getAmount(), 0.0001);
+          assertEquals("A2", slices.get(1).getAccountId());
+          assertEquals(10.0, slices.get(1).getAmount(), 0.0001);
+          assertEquals("A3", slices.get(2).getAccountId());
+          assertEquals(25.0, slices.get(2).getAmount(), 0.0001);
+        })
+        .verifyComplete();
+
+    verify(f.accounts, never()).getAccount("A2");
+    verify(f.accounts, never()).getAccount("A3");
+  }
+
+  @Test
+  void debit_stops_fetching_balances_once_primary_covers_amount() {
+    Fixture f = new Fixture().card(debitCard("C10", "A2", "A3")).primary(100.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C10", "OP10", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .assertNext(stored -> {
+          assertEquals(1, stored.getResult().getSlices().size());
+          assertEquals("A1", stored.getResult().getSlices().get(0).getAccountId());
+        })
+        .verifyComplete();
+
+    verify(f.accounts).getAccount("A1");
+    verify(f.accounts, never()).getAccount("A2");
+    verify(f.accounts, never()).getAccount("A3");
+  }
+
+  @Test
+  void debit_fails_when_linked_account_missing() {
+    Fixture f = new Fixture().card(debitCard("C9", "A2")).primary(5.0);
+    when(f.accounts.getAccounts(List.of("A2"))).thenReturn(Mono.error(new IllegalArgumentException("Account not found")));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C9", "OP9", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertEquals("Account not found", ex.getMessage()))
+        .verify();
+    verify(f.accounts, never()).applyBalanceOperation(anyString(), any());
+  }
+
+  @Test
+  void debit_tx_enqueue_overlaps_with_save_and_failure_does_not_cancel_it() {
+    Fixture f = new Fixture().card(debitCard("C11")).primary(100.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    // el guardado se suscribe aunque el encolado falle primero
+    boolean[] saved = {false};
+    when(f.repo.touchUpdatedDate(eq("C11"), any(OffsetDateTime.class))).thenReturn(Mono.fromRunnable(() -> {
+      saved[0] = true;
+    }).delaySubscription(Duration.ofMillis(30)).then());
+    when(f.outbox.enqueue(anyString(), anyString(), anyList())).thenReturn(Mono.error(new IllegalStateException("tx down")));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C11", "OP11", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertEquals("tx down", ex.getMessage()))
+        .verify();
+    assertTrue(saved[0]);
   }
 
   @Test
   void debit_fails_when_not_debit_or_not_active() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    Fixture f = new Fixture();
+    DebitOrchestratorService svc = f.build();
 
     Card c1 = new Card();
     c1.setId("X");
     c1.setCardType("CREDIT");
-    when(repo.findById("X")).thenReturn(Mono.just(c1));
+    f.card(c1);
     StepVerifier.create(svc.debit("X", "OP", 10, "K", Map.of(), "purchase"))
         .expectError(IllegalStateException.class).verify();
 
@@ -102,31 +325,14 @@ class DebitOrchestratorServiceTest {
     c2.setId("Y");
     c2.setCardType("DEBIT");
     c2.setStatus(ACTIVE);
-    when(repo.findById("Y")).thenReturn(Mono.just(c2));
+    f.card(c2);
     StepVerifier.create(svc.debit("Y", "OP", 10, "K", Map.of(), "purchase"))
         .expectError(IllegalStateException.class).verify();
   }
 
   @Test
   void debit_fails_when_insufficient_balance() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-
-    Card card = new Card();
-    card.setId("C3");
-    card.setCardType("DEBIT");
-    card.setStatus(ACTIVE);
-    card.setPrimaryAccountId("A1");
-
-    when(repo.findById("C3")).thenReturn(Mono.just(card));
-    when(accounts.getAccount("A1")).thenReturn(Mono.just(new AccountDto() {{
-      setId("A1");
-      setBalance(5.0);
-      setActive(true);
-    }}));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    DebitOrchestratorService svc = new Fixture().card(debitCard("C3")).primary(5.0).build();
 
     StepVerifier.create(svc.debit("C3", "OP", 10.0, "K", Map.of(), "purchase"))
         .expectError(IllegalStateException.class).verify();
@@ -134,10 +340,9 @@ class DebitOrchestratorServiceTest {
 
   @Test
   void debit_cardNotFound_throws() {
-    CardRepository repo = mock(CardRepository.class);
-    when(repo.findById("NOPE")).thenReturn(Mono.empty());
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, mock(AccountsClient.class), mock(TransactionsClient.class));
+    Fixture f = new Fixture();
+    when(f.repo.findById("NOPE")).thenReturn(Mono.empty());
+    DebitOrchestratorService svc = f.build();
 
     StepVerifier.create(svc.debit("NOPE", "OP", 10.0, "K", Map.of(), "purchase"))
         .expectError(IllegalArgumentException.class)
@@ -146,18 +351,9 @@ class DebitOrchestratorServiceTest {
 
   @Test
   void debit_notActive_throws() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-
-    Card c = new Card();
-    c.setId("C1");
-    c.setCardType("DEBIT");
+    Card c = debitCard("C1");
     c.setStatus(CardResponse.StatusEnum.BLOCKED); // no ACTIVE
-
-    when(repo.findById("C1")).thenReturn(Mono.just(c));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    DebitOrchestratorService svc = new Fixture().card(c).build();
 
     StepVerifier.create(svc.debit("C1", "OP", 10.0, "K", Map.of(), "purchase"))
         .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("Card is not ACTIVE")))
@@ -166,29 +362,12 @@ class DebitOrchestratorServiceTest {
 
   @Test
   void debit_withdrawal_limit_exceeded_throws_and_not_for_purchase() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-
-    Card card = new Card();
-    card.setId("C4");
-    card.setCardType("DEBIT");
-    card.setStatus(CardResponse.StatusEnum.ACTIVE);
-    card.setPrimaryAccountId("A1");
-    card.setAccounts(List.of("A1"));
+    Card card = debitCard("C4", "A1");
     CardRequestLimits limits = new CardRequestLimits();
     limits.setAtmWithdrawalLimit(100.0);
     card.setLimits(limits);
-
-    when(repo.findById("C4")).thenReturn(Mono.just(card));
-    AccountDto a1 = new AccountDto();
-    a1.setId("A1");
-    a1.setBalance(500.0);
-    a1.setActive(true);
-    when(accounts.getAccount("A1")).thenReturn(Mono.just(a1));
-    when(repo.save(any(Card.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    Fixture f = new Fixture().card(card).primary(500.0);
+    DebitOrchestratorService svc = f.build();
 
     // withdrawal supera límite -> error
     StepVerifier.create(svc.debit("C4", "OPW", 150.0, "WITHDRAW", Map.of(), "withdrawal"))
@@ -196,9 +375,8 @@ class DebitOrchestratorServiceTest {
         .verify();
 
     // purchase ignora límite ATM -> OK hasta tx (simulamos devolviendo respuestas)
-    when(accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
         .thenReturn(Mono.just(new BalanceOperationResponse()));
-    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
 
     StepVerifier.create(svc.debit("C4", "OPP", 150.0, "PURCHASE", Map.of("foo", "bar"), "purchase"))
         .expectNextMatches(op -> "OPP".equals(op.getId()) && op.getResult().getApplied())
@@ -207,33 +385,13 @@ class DebitOrchestratorServiceTest {
 
   @Test
   void debit_commissionNull_is_treated_as_zero_and_metadata_and_index_are_propagated() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-
-    Card card = new Card();
-    card.setId("C5");
-    card.setCardType("DEBIT");
-    card.setStatus(CardResponse.StatusEnum.ACTIVE);
-    card.setPrimaryAccountId("A1");
-    card.setAccounts(List.of("A1"));
-
-    when(repo.findById("C5")).thenReturn(Mono.just(card));
-    AccountDto a1 = new AccountDto();
-    a1.setId("A1");
-    a1.setBalance(80.0);
-    a1.setActive(true);
-    when(accounts.getAccount("A1")).thenReturn(Mono.just(a1));
-
+    Fixture f = new Fixture().card(debitCard("C5", "A1")).primary(80.0);
     // comisión null -> debe mapear 0.0
-    when(accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
         .thenReturn(Mono.just(new BalanceOperationResponse() {{
           setCommissionApplied(null);
         }}));
-    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
-    when(repo.save(any(Card.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    DebitOrchestratorService svc = f.build();
 
     Map<String, Object> metadata = Map.of("k", "v");
     StepVerifier.create(svc.debit("C5", "OP1", 20.0, "DEBIT_PAYMENT", metadata, "purchase"))
@@ -247,16 +405,17 @@ class DebitOrchestratorServiceTest {
 
     // capturar y verificar metadata y operationId indexado #0
     ArgumentCaptor<BalanceOperationRequest> cap = ArgumentCaptor.forClass(BalanceOperationRequest.class);
-    verify(accounts).applyBalanceOperation(eq("A1"), cap.capture());
+    verify(f.accounts).applyBalanceOperation(eq("A1"), cap.capture());
     BalanceOperationRequest sent = cap.getValue();
     assertEquals("OP1#0", sent.getOperationId());
     assertEquals("withdrawal", sent.getType()); // el servicio usa "withdrawal" para el movimiento en cuenta
     assertEquals(20.0, sent.getAmount(), 0.0001);
     assertEquals(metadata, sent.getMetadata());
 
-    ArgumentCaptor<TxPost> txCap = ArgumentCaptor.forClass(TxPost.class);
-    verify(tx).create(txCap.capture());
-    TxPost post = txCap.getValue();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<TxPost>> txCap = ArgumentCaptor.forClass(List.class);
+    verify(f.outbox).enqueue(anyString(), anyString(), txCap.capture());
+    TxPost post = txCap.getValue().get(0);
     assertEquals("purchase", post.getType());
     assertEquals(20.0, post.getAmount(), 0.0001);
     assertNotNull(post.getSender());
@@ -265,15 +424,7 @@ class DebitOrchestratorServiceTest {
 
   @Test
   void debit_idempotent_returns_existing_without_calling_downstreams() {
-    CardRepository repo = mock(CardRepository.class);
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-
-    Card card = new Card();
-    card.setId("C6");
-    card.setCardType("DEBIT");
-    card.setStatus(CardResponse.StatusEnum.ACTIVE);
-    card.setPrimaryAccountId("A1");
+    Card card = debitCard("C6");
     // operación ya almacenada
     StoredOperation stored = new StoredOperation();
     stored.setId("OPX");
@@ -282,69 +433,341 @@ class DebitOrchestratorServiceTest {
     res.setMessage("PREV");
     stored.setResult(res);
     card.getOperations().add(stored);
-
-    when(repo.findById("C6")).thenReturn(Mono.just(card));
-
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+    Fixture f = new Fixture().card(card);
+    DebitOrchestratorService svc = f.build();
 
     StepVerifier.create(svc.debit("C6", "OPX", 10.0, "ANY", Map.of(), "purchase"))
         .expectNextMatches(s -> "PREV".equals(s.getResult().getMessage()))
         .verifyComplete();
 
-    verifyNoInteractions(accounts);
-    verifyNoInteractions(tx);
+    verifyNoInteractions(f.accounts);
+    verifyNoInteractions(f.outbox);
   }
 
   @Test
-  void compensate_deposits_each_slice_and_registers_reversals() {
-    AccountsClient accounts = mock(AccountsClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
-    CardRepository repo = mock(CardRepository.class);
+  void debit_concurrent_duplicates_share_one_in_flight_operation() {
+    Fixture f = new Fixture().card(debitCard("C12")).primary(100.0);
+    // el retiro tarda: el duplicado llega mientras el primero sigue en curso
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()).delayElement(Duration.ofMillis(100)));
+    DebitOrchestratorService svc = f.build();
+
+    Mono<StoredOperation> first = svc.debit("C12", "OP12", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase");
+    Mono<StoredOperation> retry = svc.debit("C12", "OP12", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase");
+
+    StepVerifier.create(Flux.merge(first, retry))
+        .expectNextCount(2)
+        .verifyComplete();
 
-    when(accounts.applyBalanceOperation(anyString(), any(BalanceOperationRequest.class)))
-        .thenReturn(Mono.just(new BalanceOperationResponse()));
-    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
+    verify(f.accounts, times(1)).applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class));
+    verify(f.repo, times(1)).touchUpdatedDate(eq("C12"), any(OffsetDateTime.class));
+    assertEquals(1.0, f.registry.counter("cards.debit.singleflight.coalesced").count(), 0.0001);
+  }
 
-    DebitOrchestratorService svc = new DebitOrchestratorService(repo, accounts, tx);
+  @Test
+  void compensate_delegates_to_executor_and_evicts_funds_bound() {
+    Fixture f = new Fixture();
+    when(f.compensations.compensate(eq("C7"), eq("OPC"), anyList(), eq("credits_failed"))).thenReturn(Mono.empty());
+    DebitOrchestratorService svc = f.build();
 
     Card card = new Card();
     card.setId("C7");
     var s1 = new com.nttdata.cards_service.model.CardOperationResponseSlices();
     s1.setAccountId("A1");
     s1.setAmount(15.0);
-    var s2 = new com.nttdata.cards_service.model.CardOperationResponseSlices();
+
+    StepVerifier.create(svc.compensate(card, "OPC", List.of(s1), "payment"))
+        .verifyComplete();
+
+    InOrder inOrder = inOrder(f.compensations, f.funds);
+    inOrder.verify(f.compensations).compensate("C7", "OPC", List.of(s1), "credits_failed");
+    inOrder.verify(f.funds).evict("C7");
+  }
+
+  @Test
+  void debit_daily_purchase_limit_rejects_before_calling_accounts() {
+    Card card = debitCard("C13");
+    CardRequestLimits limits = new CardRequestLimits();
+    limits.setDailyPurchaseLimit(100.0);
+    card.setLimits(limits);
+    Fixture f = new Fixture().card(card);
+    LocalDate day = LocalDate.of(2024, 1, 1);
+    when(f.limiter.today()).thenReturn(day);
+    when(f.limiter.reserve("C13", day, 4000L, 10000L))
+        .thenReturn(Mono.error(new IllegalStateException("Daily purchase limit exceeded")));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C13", "OP13", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertEquals("Daily purchase limit exceeded", ex.getMessage()))
+        .verify();
+    verifyNoInteractions(f.accounts);
+    verify(f.limiter, never()).release(anyString(), any(LocalDate.class), anyLong());
+  }
+
+  @Test
+  void debit_daily_purchase_limit_releases_reservation_when_debit_fails() {
+    Card card = debitCard("C14");
+    CardRequestLimits limits = new CardRequestLimits();
+    limits.setDailyPurchaseLimit(100.0);
+    card.setLimits(limits);
+    Fixture f = new Fixture().card(card).primary(100.0);
+    LocalDate day = LocalDate.of(2024, 1, 1);
+    when(f.limiter.today()).thenReturn(day);
+    when(f.limiter.reserve("C14", day, 4000L, 10000L)).thenReturn(Mono.empty());
+    when(f.limiter.release("C14", day, 4000L)).thenReturn(Mono.empty());
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.error(new IllegalStateException("accounts down")));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C14", "OP14", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertEquals("accounts down", ex.getMessage()))
+        .verify();
+    verify(f.limiter).release("C14", day, 4000L);
+  }
+
+  @Test
+  void debit_known_funds_bound_rejects_without_fetching_balances() {
+    Fixture f = new Fixture().card(debitCard("C15", "A2"));
+    when(f.funds.get("C15")).thenReturn(Mono.just(2500L));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C15", "OP15", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("Saldo insuficiente")))
+        .verify();
+    verifyNoInteractions(f.accounts);
+  }
+
+  @Test
+  void debit_insufficient_after_all_balances_remembers_funds_bound() {
+    Fixture f = new Fixture().card(debitCard("C16", "A2")).balances(10.0, 15.0);
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C16", "OP16", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("Saldo insuficiente")))
+        .verify();
+    verify(f.funds).remember("C16", 2500L);
+    verify(f.accounts, never()).applyBalanceOperation(anyString(), any(BalanceOperationRequest.class));
+  }
+
+  @Test
+  void debit_writes_saga_plan_before_withdrawing_and_walks_its_states() {
+    Fixture f = new Fixture().card(debitCard("C17")).primary(100.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C17", "OP17", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    ArgumentCaptor<DebitSagaRecord> saga = ArgumentCaptor.forClass(DebitSagaRecord.class);
+    InOrder inOrder = inOrder(f.sagas, f.accounts);
+    inOrder.verify(f.sagas).start(saga.capture());
+    inOrder.verify(f.accounts).applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class));
+    inOrder.verify(f.sagas).slicesApplied(any(DebitSagaRecord.class), anyList());
+    inOrder.verify(f.sagas).advance(any(DebitSagaRecord.class), eq(DebitSagaRecord.LOGGED));
+    inOrder.verify(f.sagas).advance(any(DebitSagaRecord.class), eq(DebitSagaRecord.DONE));
+    assertEquals("OP17", saga.getValue().getOperationId());
+    assertEquals(1, saga.getValue().getPlan().size());
+    assertEquals("purchase", saga.getValue().getTxType());
+  }
+
+  @Test
+  void debit_failed_slice_compensates_the_ones_already_withdrawn() {
+    Fixture f = new Fixture().card(debitCard("C18", "A2")).balances(30.0, 50.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse()));
+    when(f.accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.error(new IllegalStateException("A2 insufficient")));
+    when(f.compensations.compensate(eq("C18"), eq("OP18"), anyList(), eq("debit_failed"))).thenReturn(Mono.empty());
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C18", "OP18", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorMessage("A2 insufficient")
+        .verify();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<CardOperationResponseSlices>> applied = ArgumentCaptor.forClass(List.class);
+    verify(f.compensations).compensate(eq("C18"), eq("OP18"), applied.capture(), eq("debit_failed"));
+    assertEquals(1, applied.getValue().size());
+    assertEquals("A1", applied.getValue().get(0).getAccountId());
+    assertEquals(30.0, applied.getValue().get(0).getAmount(), 0.0001);
+    verify(f.sagas).compensating(any(DebitSagaRecord.class), anyList());
+    verify(f.sagas).advance(any(DebitSagaRecord.class), eq(DebitSagaRecord.COMPENSATED));
+    verify(f.funds).evict("C18");
+  }
+
+  @Test
+  void resume_slices_applied_saga_records_operation_and_closes_it() {
+    Fixture f = new Fixture();
+    CardOperationResponseSlices s1 = new CardOperationResponseSlices();
+    s1.setAccountId("A1");
+    s1.setAmount(40.0);
+    s1.setCommissionApplied(0.0);
+    DebitSagaRecord saga = new DebitSagaRecord();
+    saga.setId("C19:OP19");
+    saga.setCardId("C19");
+    saga.setOperationId("OP19");
+    saga.setKind("DEBIT_PAYMENT");
+    saga.setTxType("purchase");
+    saga.setAmount(40.0);
+    saga.setPlan(List.of(s1));
+    saga.setApplied(List.of(s1));
+    saga.setState(DebitSagaRecord.SLICES_APPLIED);
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.resume(saga)).verifyComplete();
+
+    verifyNoInteractions(f.accounts);
+    verify(f.ops).insert(argThat((CardOperationRecord r) -> "C19".equals(r.getCardId()) && "OP19".equals(r.getOperationId())));
+    verify(f.outbox).enqueue(eq("C19"), eq("C19:OP19#tx"), argThat(posts -> posts.size() == 1));
+    verify(f.sagas).advance(saga, DebitSagaRecord.DONE);
+  }
+
+  @Test
+  void resume_logged_saga_re_derives_the_outbox_rows_under_the_same_ids() {
+    Fixture f = new Fixture();
+    f.ops = mock(CardOperationRepository.class);
+    // el primer intento registró la operación pero no llegó a encolar las transacciones
+    CardOperationRecord existing = new CardOperationRecord();
+    existing.setCardId("C20");
+    existing.setOperationId("OP20");
+    existing.setKind("DEBIT_PAYMENT");
+    existing.setResult(new CardOperationResponse().applied(true));
+    when(f.ops.insert(any(CardOperationRecord.class)))
+        .thenReturn(Mono.error(new org.springframework.dao.DuplicateKeyException("dup")));
+    when(f.ops.findByCardIdAndOperationId("C20", "OP20")).thenReturn(Mono.just(existing));
+
+    CardOperationResponseSlices s1 = new CardOperationResponseSlices();
+    s1.setAccountId("A1");
+    s1.setAmount(25.0);
+    s1.setCommissionApplied(0.0);
+    CardOperationResponseSlices s2 = new CardOperationResponseSlices();
     s2.setAccountId("A2");
-    s2.setAmount(25.0);
+    s2.setAmount(15.0);
+    s2.setCommissionApplied(0.0);
+    DebitSagaRecord saga = new DebitSagaRecord();
+    saga.setId("C20:OP20");
+    saga.setCardId("C20");
+    saga.setOperationId("OP20");
+    saga.setKind("DEBIT_PAYMENT");
+    saga.setTxType("purchase");
+    saga.setAmount(40.0);
+    saga.setPlan(List.of(s1, s2));
+    saga.setApplied(List.of(s1, s2));
+    saga.setState(DebitSagaRecord.LOGGED);
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.resume(saga)).verifyComplete();
+
+    // mismas claves que en el camino en línea: el outbox solo añade las filas que falten
+    verify(f.outbox).enqueue(eq("C20"), eq("C20:OP20#tx"), argThat(posts -> posts.size() == 2
+        && "A1".equals(posts.get(0).getSender().getId()) && "A2".equals(posts.get(1).getSender().getId())));
+    verify(f.sagas).advance(saga, DebitSagaRecord.DONE);
+  }
 
-    StepVerifier.create(svc.compensate(card, "OPC", List.of(s1, s2), "payment"))
+  @Test
+  void two_phase_debit_holds_every_slice_before_capturing() {
+    Fixture f = new Fixture().card(twoAccountCard("C20")).balances(30.0, 50.0);
+    when(f.accounts.applyBalanceOperation(anyString(), argThat(r -> "hold".equals(r.getType())))).thenReturn(ok(0.0));
+    when(f.accounts.applyBalanceOperation(eq("A1"), argThat(r -> "capture".equals(r.getType())))).thenReturn(ok(0.5));
+    when(f.accounts.applyBalanceOperation(eq("A2"), argThat(r -> "capture".equals(r.getType())))).thenReturn(ok(0.0));
+    DebitOrchestratorService svc = f.build();
+    ReflectionTestUtils.setField(svc, "mode", "two-phase");
+
+    StepVerifier.create(svc.debit("C20", "OP20", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .assertNext(stored -> {
+          CardOperationResponse res = stored.getResult();
+          assertEquals(0.5, res.getCommissionTotal(), 0.0001);
+          assertEquals("A1", res.getSlices().get(0).getAccountId());
+          assertEquals(30.0, res.getSlices().get(0).getAmount(), 0.0001);
+          assertEquals("A2", res.getSlices().get(1).getAccountId());
+          assertEquals(10.0, res.getSlices().get(1).getAmount(), 0.0001);
+        })
         .verifyComplete();
 
-    // se llaman dos depósitos con ids indexados y tipo deposit
     ArgumentCaptor<BalanceOperationRequest> cap = ArgumentCaptor.forClass(BalanceOperationRequest.class);
-    InOrder inOrder = inOrder(accounts, tx);
-    inOrder.verify(accounts).applyBalanceOperation(eq("A1"), cap.capture());
-    inOrder.verify(tx).create(any(TxPost.class));
-    inOrder.verify(accounts).applyBalanceOperation(eq("A2"), cap.capture());
-    inOrder.verify(tx).create(any(TxPost.class));
-
-    List<BalanceOperationRequest> reqs = cap.getAllValues();
-    assertEquals("OPC#comp#0", reqs.get(0).getOperationId());
-    assertEquals("deposit", reqs.get(0).getType());
-    assertEquals(15.0, reqs.get(0).getAmount(), 0.0001);
-    assertEquals("OPC#comp#1", reqs.get(1).getOperationId());
-    assertEquals(25.0, reqs.get(1).getAmount(), 0.0001);
-
-    // verificar reversals
-    ArgumentCaptor<TxPost> txCap = ArgumentCaptor.forClass(TxPost.class);
-    verify(tx, times(2)).create(txCap.capture());
-    List<TxPost> posts = txCap.getAllValues();
-    assertEquals("reversal", posts.get(0).getType());
-    assertEquals(15.0, posts.get(0).getAmount(), 0.0001);
-    assertNotNull(posts.get(0).getReceiver());
-    assertEquals("A1", posts.get(0).getReceiver().getId());
-
-    assertEquals("reversal", posts.get(1).getType());
-    assertEquals(25.0, posts.get(1).getAmount(), 0.0001);
-    assertEquals("A2", posts.get(1).getReceiver().getId());
+    verify(f.accounts, times(4)).applyBalanceOperation(anyString(), cap.capture());
+    List<String> types = cap.getAllValues().stream().map(BalanceOperationRequest::getType).collect(java.util.stream.Collectors.toList());
+    assertEquals(List.of("hold", "hold", "capture", "capture"), types);
+    assertTrue(cap.getAllValues().stream().anyMatch(r -> "OP20#0#hold".equals(r.getOperationId())));
+    assertTrue(cap.getAllValues().stream().anyMatch(r -> "OP20#1".equals(r.getOperationId())));
+  }
+
+  @Test
+  void two_phase_debit_denied_hold_releases_the_others_without_compensating() {
+    Fixture f = new Fixture().card(twoAccountCard("C21")).balances(30.0, 50.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), argThat(r -> "hold".equals(r.getType())))).thenReturn(ok(0.0));
+    when(f.accounts.applyBalanceOperation(eq("A2"), argThat(r -> "hold".equals(r.getType()))))
+        .thenReturn(Mono.error(new IllegalStateException("A2 hold denied")));
+    when(f.accounts.applyBalanceOperation(eq("A1"), argThat(r -> "release".equals(r.getType())))).thenReturn(ok(0.0));
+    DebitOrchestratorService svc = f.build();
+    ReflectionTestUtils.setField(svc, "mode", "two-phase");
+
+    StepVerifier.create(svc.debit("C21", "OP21", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorMessage("A2 hold denied")
+        .verify();
+
+    verify(f.accounts).applyBalanceOperation(eq("A1"), argThat(r -> "release".equals(r.getType())
+        && "OP21#0#release".equals(r.getOperationId())));
+    verify(f.accounts, never()).applyBalanceOperation(anyString(), argThat(r -> "capture".equals(r.getType())));
+    verifyNoInteractions(f.compensations);
+    verify(f.sagas, never()).slicesApplied(any(DebitSagaRecord.class), anyList());
+
+    // sin saga abierta la recuperación no vuelve a retener ni capturar un débito ya rechazado
+    ArgumentCaptor<DebitSagaRecord> discarded = ArgumentCaptor.forClass(DebitSagaRecord.class);
+    verify(f.sagas).discard(discarded.capture());
+    assertEquals(DebitSagaRecord.DISCARDED, discarded.getValue().getState());
+    clearInvocations(f.accounts);
+    StepVerifier.create(svc.resume(discarded.getValue())).verifyComplete();
+    verifyNoInteractions(f.accounts);
+  }
+
+  @Test
+  void debit_with_min_slices_planner_reads_every_balance_and_uses_one_account() {
+    Card card = twoAccountCard("C22");
+    card.getMetadata().put(SlicePlanners.CARD_METADATA_KEY, MinSliceCountPlanner.NAME);
+    // la principal cubre el importe, pero A2 lo cubre igual y se consulta porque la estrategia lo necesita
+    Fixture f = new Fixture().card(card).balances(40.0, 50.0);
+    when(f.accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class))).thenReturn(ok(0.0));
+    f.planners = new SlicePlanners(List.of(new GreedySlicePlanner(), new MinSliceCountPlanner()),
+        new SliceCommissionStats());
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C22", "OP22", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .assertNext(stored -> {
+          assertEquals(1, stored.getResult().getSlices().size());
+          assertEquals("A2", stored.getResult().getSlices().get(0).getAccountId());
+        })
+        .verifyComplete();
+
+    verify(f.accounts).getAccounts(List.of("A2"));
+    verify(f.accounts, never()).applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class));
+  }
+
+  @Test
+  void debit_times_each_stage_with_outcome() {
+    Fixture f = new Fixture().card(twoAccountCard("C30")).balances(30.0, 50.0);
+    when(f.accounts.applyBalanceOperation(eq("A1"), any(BalanceOperationRequest.class))).thenReturn(ok(0.0));
+    when(f.accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.error(new IllegalStateException("A2 down")));
+    DebitOrchestratorService svc = f.build();
+
+    StepVerifier.create(svc.debit("C30", "OP30", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectErrorMessage("A2 down")
+        .verify();
+
+    when(f.accounts.applyBalanceOperation(eq("A2"), any(BalanceOperationRequest.class))).thenReturn(ok(0.0));
+    StepVerifier.create(svc.debit("C30", "OP31", 40.0, "DEBIT_PAYMENT", Map.of(), "purchase"))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    SimpleMeterRegistry registry = f.registry;
+    for (String stage : List.of("idempotency_lookup", "card_load", "balance_fetch", "tx_post", "save")) {
+      assertNotNull(registry.find("cards.debit.stage").tags("stage", stage, "outcome", "success").timer(), stage);
+    }
+    assertEquals(1, registry.get("cards.debit.stage").tags("stage", "slice_apply", "outcome", "error").timer().count());
+    assertEquals(1, registry.get("cards.debit.stage").tags("stage", "slice_apply", "outcome", "success").timer().count());
+    assertEquals(2, registry.get("cards.debit.stage").tags("stage", "balance_fetch", "outcome", "success").timer().count());
   }
 }
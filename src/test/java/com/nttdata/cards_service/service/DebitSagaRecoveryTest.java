@@ -0,0 +1,59 @@
+package com.nttdata.cards_service.service;
+
+import com.nttdata.cards_service.model.entity.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DebitSagaRecoveryTest {
+
+  private DebitSagaLog sagas;
+  private DebitOrchestratorService debit;
+  private DebitSagaRecovery recovery;
+
+  @BeforeEach
+  void init() {
+    sagas = mock(DebitSagaLog.class);
+    debit = mock(DebitOrchestratorService.class);
+    recovery = new DebitSagaRecovery(sagas, debit);
+  }
+
+  private static DebitSagaRecord saga(String id, String state) {
+    DebitSagaRecord s = new DebitSagaRecord();
+    s.setId(id);
+    s.setState(state);
+    s.setUpdatedAt(OffsetDateTime.now().minusMinutes(5));
+    return s;
+  }
+
+  @Test
+  void recover_resumes_claimed_sagas_and_counts_closed_ones() {
+    DebitSagaRecord planned = saga("C1:OP1", DebitSagaRecord.PLANNED);
+    DebitSagaRecord logged = saga("C1:OP2", DebitSagaRecord.LOGGED);
+    when(sagas.stale(any(OffsetDateTime.class), anyInt())).thenReturn(Flux.just(planned, logged));
+    when(sagas.claim(any(DebitSagaRecord.class))).thenReturn(Mono.just(true));
+    when(debit.resume(planned)).thenReturn(Mono.empty());
+    when(debit.resume(logged)).thenReturn(Mono.error(new IllegalStateException("accounts down")));
+
+    StepVerifier.create(recovery.recover()).expectNext(1L).verifyComplete();
+
+    verify(debit).resume(planned);
+    verify(debit).resume(logged);
+  }
+
+  @Test
+  void recover_skips_sagas_claimed_by_another_node() {
+    DebitSagaRecord planned = saga("C1:OP1", DebitSagaRecord.PLANNED);
+    when(sagas.stale(any(OffsetDateTime.class), anyInt())).thenReturn(Flux.just(planned));
+    when(sagas.claim(planned)).thenReturn(Mono.just(false));
+
+    StepVerifier.create(recovery.recover()).expectNext(0L).verifyComplete();
+
+    verifyNoInteractions(debit);
+  }
+}
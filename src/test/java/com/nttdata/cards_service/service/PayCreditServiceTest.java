@@ -1,6 +1,5 @@
 package com.nttdata.cards_service.service;
 
-import com.nttdata.cards_service.integration.transactions.*;
 import com.nttdata.cards_service.integration.transactions.dto.*;
 import com.nttdata.cards_service.model.*;
 import com.nttdata.cards_service.model.entity.*;
@@ -21,7 +20,7 @@ class PayCreditServiceTest {
   void pay_success_applies_credit_and_tx() {
     DebitOrchestratorService debit = mock(DebitOrchestratorService.class);
     com.nttdata.cards_service.integration.credits.CreditClient credits = mock(com.nttdata.cards_service.integration.credits.CreditClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
+    TransactionOutbox outbox = mock(TransactionOutbox.class);
     CardRepository repo = mock(CardRepository.class);
 
     Card card = new Card();
@@ -37,23 +36,25 @@ class PayCreditServiceTest {
         .thenReturn(Mono.just(stored));
 
     when(credits.applyPayment(eq("CR1"), any())).thenReturn(Mono.empty());
-    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
+    when(outbox.enqueue(anyString(), anyString(), anyList())).thenReturn(Mono.empty());
 
-    PayCreditService svc = new PayCreditService(debit, credits, tx, repo);
+    PayCreditService svc = new PayCreditService(debit, credits, outbox, repo);
 
     StepVerifier.create(svc.pay("C1", "OP1", "CR1", 100.0, "nota"))
         .expectNext(stored)
         .verifyComplete();
 
     verify(credits).applyPayment(eq("CR1"), argThat(req -> "CARD".equals(req.getChannel()) && req.getAmount() == 100.0));
-    verify(tx).create(any(TxPost.class));
+    verify(outbox).enqueue(eq("C1"), eq("C1:OP1#pay"), argThat(posts -> posts.size() == 1
+        && "payment".equals(posts.get(0).getType())
+        && "CR1".equals(posts.get(0).getReceiver().getId())));
   }
 
   @Test
   void pay_failure_in_credits_triggers_compensation() {
     DebitOrchestratorService debit = mock(DebitOrchestratorService.class);
     com.nttdata.cards_service.integration.credits.CreditClient credits = mock(com.nttdata.cards_service.integration.credits.CreditClient.class);
-    TransactionsClient tx = mock(TransactionsClient.class);
+    TransactionOutbox outbox = mock(TransactionOutbox.class);
     CardRepository repo = mock(CardRepository.class);
 
     Card card = new Card();
@@ -74,7 +75,7 @@ class PayCreditServiceTest {
     when(credits.applyPayment(eq("CR1"), any())).thenReturn(Mono.error(new RuntimeException("boom")));
     when(debit.compensate(eq(card), eq("OP2"), anyList(), eq("payment"))).thenReturn(Mono.empty());
 
-    PayCreditService svc = new PayCreditService(debit, credits, tx, repo);
+    PayCreditService svc = new PayCreditService(debit, credits, outbox, repo);
 
     StepVerifier.create(svc.pay("C1", "OP2", "CR1", 50.0, "nota"))
         .expectError(IllegalStateException.class)
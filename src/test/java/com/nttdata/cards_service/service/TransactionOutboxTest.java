@@ -0,0 +1,207 @@
+package com.nttdata.cards_service.service;
+
+import com.mongodb.client.result.*;
+import com.nttdata.cards_service.cache.*;
+import com.nttdata.cards_service.integration.transactions.*;
+import com.nttdata.cards_service.integration.transactions.dto.*;
+import com.nttdata.cards_service.model.entity.*;
+import com.nttdata.cards_service.repository.*;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import org.springframework.dao.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.test.util.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionOutboxTest {
+
+  private TxOutboxRepository repo;
+  private ReactiveMongoTemplate mongo;
+  private TransactionsClient tx;
+  private CardsCacheService cache;
+  private TransactionOutbox outbox;
+
+  @BeforeEach
+  void init() {
+    repo = mock(TxOutboxRepository.class);
+    mongo = mock(ReactiveMongoTemplate.class);
+    tx = mock(TransactionsClient.class);
+    cache = mock(CardsCacheService.class);
+    when(cache.evictMovements(anyString())).thenReturn(Mono.empty());
+    outbox = new TransactionOutbox(repo, mongo, tx, cache);
+  }
+
+  private static TxOutboxRecord record(String id, int attempts) {
+    TxOutboxRecord r = new TxOutboxRecord();
+    r.setId(id);
+    r.setCardId("C1");
+    r.setAttempts(attempts);
+    TxPost post = new TxPost();
+    post.setType("purchase");
+    post.setAmount(10.0);
+    r.setPost(post);
+    r.setNextAttemptAt(OffsetDateTime.now().minusSeconds(1));
+    return r;
+  }
+
+  private void due(TxOutboxRecord... records) {
+    when(repo.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+        eq(TxOutboxRecord.PENDING), any(OffsetDateTime.class), any(Pageable.class)))
+        .thenReturn(Flux.just(records));
+  }
+
+  private void claims(long modified) {
+    when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(TxOutboxRecord.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, modified, null)));
+  }
+
+  @Test
+  void keyed_enqueue_uses_deterministic_ids() {
+    when(repo.insert(anyIterable())).thenAnswer(inv -> Flux.fromIterable(inv.getArgument(0)));
+
+    TxPost p1 = new TxPost();
+
+    StepVerifier.create(outbox.enqueue("C1", "C1:OP1#tx", List.of(p1, new TxPost()))).verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Iterable<TxOutboxRecord>> cap = ArgumentCaptor.forClass(Iterable.class);
+    verify(repo).insert(cap.capture());
+    List<TxOutboxRecord> saved = new ArrayList<>();
+    cap.getValue().forEach(saved::add);
+    assertEquals(List.of("C1:OP1#tx#0", "C1:OP1#tx#1"), List.of(saved.get(0).getId(), saved.get(1).getId()));
+    // pendientes y vencidos desde ya
+    assertSame(p1, saved.get(0).getPost());
+    assertEquals("C1", saved.get(0).getCardId());
+    assertEquals(TxOutboxRecord.PENDING, saved.get(0).getStatus());
+    assertNotNull(saved.get(0).getNextAttemptAt());
+    verifyNoInteractions(tx);
+  }
+
+  @Test
+  void keyed_enqueue_again_only_adds_the_missing_records() {
+    // el primer intento dejó encolado (o ya entregado) el #0
+    when(repo.insert(anyIterable())).thenReturn(Flux.error(new DuplicateKeyException("dup")));
+    when(repo.insert(any(TxOutboxRecord.class))).thenAnswer(inv -> {
+      TxOutboxRecord r = inv.getArgument(0);
+      return r.getId().endsWith("#0") ? Mono.error(new DuplicateKeyException("dup")) : Mono.just(r);
+    });
+
+    StepVerifier.create(outbox.enqueue("C1", "C1:OP1#tx", List.of(new TxPost(), new TxPost()))).verifyComplete();
+
+    verify(repo).insert(argThat((TxOutboxRecord r) -> "C1:OP1#tx#0".equals(r.getId())));
+    verify(repo).insert(argThat((TxOutboxRecord r) -> "C1:OP1#tx#1".equals(r.getId())));
+  }
+
+  // Updates de marcado como entregado (los claims comparten el mismo stub)
+  private List<String> sentIds() {
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongo, atLeast(0)).updateFirst(q.capture(), u.capture(), eq(TxOutboxRecord.class));
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < u.getAllValues().size(); i++) {
+      if (TxOutboxRecord.SENT.equals(u.getAllValues().get(i).getUpdateObject().get("$set", org.bson.Document.class).get("status")))
+        ids.add((String) q.getAllValues().get(i).getQueryObject().get("_id"));
+    }
+    return ids;
+  }
+
+  @Test
+  void drain_posts_claimed_records_and_marks_them_sent() {
+    due(record("R1", 0), record("R2", 0));
+    claims(1);
+    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
+
+    StepVerifier.create(outbox.drain()).expectNext(2L).verifyComplete();
+
+    verify(tx, times(2)).create(any(TxPost.class));
+    // se conservan en SENT (hasta su TTL) para que un reencolado con el mismo id no los reenvíe
+    assertEquals(Set.of("R1", "R2"), new HashSet<>(sentIds()));
+    verify(repo, never()).deleteById(anyString());
+    // una sola baja de movimientos por tarjeta en el lote
+    verify(cache, times(1)).evictMovements("C1");
+  }
+
+  @Test
+  void drain_skips_records_claimed_by_another_node() {
+    due(record("R1", 0));
+    claims(0);
+
+    StepVerifier.create(outbox.drain()).expectNext(0L).verifyComplete();
+
+    verifyNoInteractions(tx);
+    assertTrue(sentIds().isEmpty());
+  }
+
+  @Test
+  void drain_failure_reschedules_with_backoff_and_gives_up_after_max_attempts() {
+    TxOutboxRecord retry = record("R1", 0);
+    TxOutboxRecord last = record("R2", 9);
+    due(retry, last);
+    claims(1);
+    when(tx.create(any(TxPost.class))).thenReturn(Mono.error(new IllegalStateException("tx down")));
+    when(repo.save(any(TxOutboxRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+    OffsetDateTime before = OffsetDateTime.now();
+    StepVerifier.create(outbox.drain()).expectNext(0L).verifyComplete();
+
+    assertEquals(1, retry.getAttempts());
+    assertEquals(TxOutboxRecord.PENDING, retry.getStatus());
+    assertEquals("tx down", retry.getLastError());
+    assertTrue(retry.getNextAttemptAt().isAfter(before));
+
+    assertEquals(10, last.getAttempts());
+    assertEquals(TxOutboxRecord.FAILED, last.getStatus());
+    assertTrue(sentIds().isEmpty());
+    verify(cache, never()).evictMovements(anyString());
+  }
+
+  @Test
+  void drain_mark_sent_failure_retries_the_mark_without_reposting() {
+    TxOutboxRecord r = record("R1", 0);
+    due(r);
+    int[] marks = {0};
+    when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(TxOutboxRecord.class))).thenAnswer(inv -> {
+      UpdateDefinition u = inv.getArgument(1);
+      boolean mark = TxOutboxRecord.SENT.equals(u.getUpdateObject().get("$set", org.bson.Document.class).get("status"));
+      if (mark && marks[0]++ == 0) return Mono.error(new IllegalStateException("mongo down"));
+      return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+    });
+    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
+
+    StepVerifier.create(outbox.drain()).expectNext(1L).verifyComplete();
+
+    verify(tx, times(1)).create(any(TxPost.class));
+    assertEquals(2, marks[0]);
+    // no pasa por la reprogramación: ni suma intento ni adelanta el reenvío
+    verify(repo, never()).save(any(TxOutboxRecord.class));
+    assertEquals(0, r.getAttempts());
+    verify(cache).evictMovements("C1");
+  }
+
+  @Test
+  void drain_keeps_going_while_batches_come_back_full() {
+    ReflectionTestUtils.setField(outbox, "batchSize", 2);
+    when(repo.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+        eq(TxOutboxRecord.PENDING), any(OffsetDateTime.class), any(Pageable.class)))
+        .thenReturn(Flux.just(record("R1", 0), record("R2", 0)), Flux.just(record("R3", 0)));
+    claims(1);
+    when(tx.create(any(TxPost.class))).thenReturn(Mono.just(new TxGet()));
+
+    StepVerifier.create(outbox.drain()).expectNext(3L).verifyComplete();
+
+    // dos lotes: el segundo vino incompleto y ya no se pide un tercero
+    verify(repo, times(2)).findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+        eq(TxOutboxRecord.PENDING), any(OffsetDateTime.class), any(Pageable.class));
+    assertEquals(Set.of("R1", "R2", "R3"), new HashSet<>(sentIds()));
+  }
+}
@@ -37,7 +37,22 @@ class CardServiceImplTest {
                                   com.nttdata.cards_service.adapter.mapper.CardMapper mapper,
                                   CardsCacheService cache,
                                   AccountsClient accounts) {
-    return new CardServiceImpl(repo, credits, debit, pay, mov, primary, mapper, cache, accounts);
+    FundsUpperBoundCache fundsBound = mock(FundsUpperBoundCache.class);
+    when(fundsBound.evict(anyString())).thenReturn(Mono.empty());
+    if (cache == null) cache = writableCache();
+    return new CardServiceImpl(repo, credits, debit, pay, mov, primary, mapper, cache, fundsBound, accounts);
+  }
+
+  private static CardsCacheService writableCache() {
+    CardsCacheService cache = mock(CardsCacheService.class);
+    when(cache.putCard(any(CardResponse.class))).thenReturn(Mono.empty());
+    when(cache.evictCard(anyString())).thenReturn(Mono.empty());
+    when(cache.evictPrimaryBalance(anyString())).thenReturn(Mono.empty());
+    when(cache.evictMovements(anyString())).thenReturn(Mono.empty());
+    // sin nada en caché: todo se resuelve con el cargador
+    when(cache.cardsByIds(anyCollection(), any())).thenAnswer(inv ->
+        inv.<Function<Collection<String>, Flux<CardResponse>>>getArgument(1).apply(inv.getArgument(0)));
+    return cache;
   }
 
   // --------- createCard ---------
@@ -217,7 +232,7 @@ class CardServiceImplTest {
     when(mapper.toResponse(any(Card.class))).thenReturn(new CardResponse().id("C2"));
 
     CardServiceImpl svc = service(repo, credits, null, null, null, null, mapper,
-        mock(CardsCacheService.class), mock(AccountsClient.class));
+        writableCache(), mock(AccountsClient.class));
 
     StepVerifier.create(svc.createCard(req))
         .expectNextMatches(r -> "C2".equals(r.getId()))
@@ -243,6 +258,23 @@ class CardServiceImplTest {
         .verifyComplete();
   }
 
+  @Test
+  void getCardsByIds_loads_misses_with_one_findAllById() {
+    CardRepository repo = mock(CardRepository.class);
+    com.nttdata.cards_service.adapter.mapper.CardMapper mapper = mock(com.nttdata.cards_service.adapter.mapper.CardMapper.class);
+
+    when(repo.findAllById(List.of("1", "2"))).thenReturn(Flux.just(new Card(), new Card()));
+    when(mapper.toResponse(any(Card.class)))
+        .thenReturn(new CardResponse().id("1"), new CardResponse().id("2"));
+
+    CardServiceImpl svc = service(repo, null, null, null, null, null, mapper, null, null);
+
+    StepVerifier.create(svc.getCardsByIds(List.of("1", "2")).map(CardResponse::getId))
+        .expectNext("1", "2")
+        .verifyComplete();
+    verify(repo, never()).findAll();
+  }
+
   @Test
   void getCardById_uses_cache_supplier() {
     CardRepository repo = mock(CardRepository.class);
@@ -383,6 +415,20 @@ class CardServiceImplTest {
     verify(repo).deleteById("Z");
   }
 
+  @Test
+  void deleteCard_evicts_every_cached_view_of_the_card() {
+    CardRepository repo = mock(CardRepository.class);
+    when(repo.deleteById("Z")).thenReturn(Mono.empty());
+    CardsCacheService cache = writableCache();
+
+    CardServiceImpl svc = service(repo, null, null, null, null, null, null, cache, null);
+
+    StepVerifier.create(svc.deleteCard("Z")).verifyComplete();
+    verify(cache).evictCard("Z");
+    verify(cache).evictPrimaryBalance("Z");
+    verify(cache).evictMovements("Z");
+  }
+
   // --------- replace/add/remove/reorder/setPrimary ---------
 
   @Test
@@ -438,8 +484,10 @@ class CardServiceImplTest {
     c.setId("C1");
     c.setCardType("DEBIT");
     when(repo.findById("C1")).thenReturn(just(c));
-    when(accounts.getAccount("A1")).thenReturn(just(acc1));
-    when(accounts.getAccount("A2")).thenReturn(just(acc2));
+    Map<String, AccountDto> found = new LinkedHashMap<>();
+    found.put("A2", acc2);
+    found.put("A1", acc1);
+    when(accounts.getAccounts(List.of("A2", "A1", "A2"))).thenReturn(just(found));
     when(repo.save(any(Card.class))).thenAnswer(inv -> just(inv.getArgument(0)));
     when(mapper.toResponse(any(Card.class))).thenReturn(new CardResponse().id("C1"));
     CardServiceImpl svc = service(repo, null, null, null, null, null, mapper, null, accounts);
@@ -454,6 +502,29 @@ class CardServiceImplTest {
     ArgumentCaptor<Card> cap = ArgumentCaptor.forClass(Card.class);
     verify(repo).save(cap.capture());
     assertEquals(List.of("A1", "A2"), cap.getValue().getAccounts());
+    verify(accounts, never()).getAccount(anyString());
+  }
+
+  @Test
+  void replaceAccounts_fails_when_an_account_is_missing() {
+    CardRepository repo = mock(CardRepository.class);
+    AccountsClient accounts = mock(AccountsClient.class);
+
+    Card c = new Card();
+    c.setId("C1");
+    c.setCardType("DEBIT");
+    when(repo.findById("C1")).thenReturn(just(c));
+    when(accounts.getAccounts(anyList()))
+        .thenReturn(Mono.error(new IllegalArgumentException("Account not found")));
+    CardServiceImpl svc = service(repo, null, null, null, null, null, null, null, accounts);
+
+    CardAccountsReplaceRequest body = new CardAccountsReplaceRequest()
+        .primaryAccountId("A1")
+        .accounts(List.of("A1", "A2"));
+    StepVerifier.create(svc.replaceAccounts("C1", body))
+        .expectErrorSatisfies(ex -> assertEquals("Account not found", ex.getMessage()))
+        .verify();
+    verify(repo, never()).save(any(Card.class));
   }
 
   @Test
@@ -851,6 +922,38 @@ class CardServiceImplTest {
     assertEquals("A3", cap.getValue().getPrimaryAccountId());
   }
 
+  @Test
+  void setPrimaryAccount_writes_card_through_and_evicts_dependents() {
+    CardRepository repo = mock(CardRepository.class);
+    AccountsClient accounts = mock(AccountsClient.class);
+    CardMapper mapper = mock(CardMapper.class);
+    CardsCacheService cache = writableCache();
+
+    Card c = new Card();
+    c.setId("CC1");
+    c.setCardType("DEBIT");
+    c.setPrimaryAccountId("A1");
+    c.setAccounts(new ArrayList<>(List.of("A1", "A2")));
+    when(repo.findById("CC1")).thenReturn(just(c));
+    AccountDto acc = new AccountDto();
+    acc.setActive(true);
+    when(accounts.getAccount("A2")).thenReturn(just(acc));
+    when(repo.save(any(Card.class))).thenAnswer(inv -> just(inv.getArgument(0)));
+    CardResponse saved = new CardResponse().id("CC1");
+    when(mapper.toResponse(any(Card.class))).thenReturn(saved);
+
+    CardServiceImpl svc = service(repo, null, null, null, null, null, mapper, cache, accounts);
+
+    StepVerifier.create(svc.setPrimaryAccount("CC1", new SetPrimaryAccountRequest().accountId("A2")))
+        .expectNext(saved)
+        .verifyComplete();
+
+    verify(cache).putCard(saved);
+    verify(cache).evictPrimaryBalance("CC1");
+    verify(cache).evictMovements("CC1");
+    verify(cache, never()).evictCard(anyString());
+  }
+
   // -------- debitDeposit tests --------
 
   @Test
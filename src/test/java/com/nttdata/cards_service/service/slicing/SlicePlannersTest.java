@@ -0,0 +1,73 @@
+package com.nttdata.cards_service.service.slicing;
+
+import com.nttdata.cards_service.model.CardOperationResponseSlices;
+import com.nttdata.cards_service.model.entity.Card;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlicePlannersTest {
+
+  private static final String[] IDS = {"A1", "A2", "A3"};
+  private static final long[] BALANCES = {1000L, 2000L, 5000L};
+
+  private static CardOperationResponseSlices applied(String accountId, double amount, double commission) {
+    CardOperationResponseSlices s = new CardOperationResponseSlices();
+    s.setAccountId(accountId);
+    s.setAmount(amount);
+    s.setCommissionApplied(commission);
+    return s;
+  }
+
+  @Test
+  void minSlices_uses_the_fewest_accounts() {
+    List<CardOperationResponseSlices> plan = new MinSliceCountPlanner().plan(4500L, IDS, BALANCES);
+    assertEquals(1, plan.size());
+    assertEquals("A3", plan.get(0).getAccountId());
+    assertEquals(45.0, plan.get(0).getAmount(), 0.0001);
+
+    // greedy necesitaría las tres cuentas
+    assertEquals(3, new GreedySlicePlanner().plan(4500L, IDS, BALANCES).size());
+  }
+
+  @Test
+  void commissionAware_drains_cheapest_accounts_first() {
+    SliceCommissionStats stats = new SliceCommissionStats();
+    stats.observe(List.of(applied("A1", 10.0, 0.5), applied("A2", 10.0, 0.1)));
+
+    List<CardOperationResponseSlices> plan = new CommissionAwareSlicePlanner(stats).plan(6000L, IDS, BALANCES);
+
+    // A3 sin comisión observada, luego A2 (1%); A1 (5%) no hace falta
+    assertEquals(2, plan.size());
+    assertEquals("A3", plan.get(0).getAccountId());
+    assertEquals(50.0, plan.get(0).getAmount(), 0.0001);
+    assertEquals("A2", plan.get(1).getAccountId());
+    assertEquals(10.0, plan.get(1).getAmount(), 0.0001);
+  }
+
+  @Test
+  void planners_throw_when_insufficient() {
+    assertThrows(IllegalStateException.class, () -> new MinSliceCountPlanner().plan(8010L, IDS, BALANCES));
+    assertThrows(IllegalStateException.class,
+        () -> new CommissionAwareSlicePlanner(new SliceCommissionStats()).plan(8010L, IDS, BALANCES));
+  }
+
+  @Test
+  void forCard_prefers_card_metadata_and_falls_back_to_default() {
+    SlicePlanners planners = new SlicePlanners(
+        List.of(new GreedySlicePlanner(), new MinSliceCountPlanner()), new SliceCommissionStats());
+
+    Card plain = new Card();
+    assertEquals(GreedySlicePlanner.NAME, planners.forCard(plain).name());
+
+    Card perCard = new Card();
+    perCard.getMetadata().put(SlicePlanners.CARD_METADATA_KEY, MinSliceCountPlanner.NAME);
+    assertEquals(MinSliceCountPlanner.NAME, planners.forCard(perCard).name());
+
+    Card unknown = new Card();
+    unknown.getMetadata().put(SlicePlanners.CARD_METADATA_KEY, "nope");
+    assertEquals(GreedySlicePlanner.NAME, planners.forCard(unknown).name());
+  }
+}